@@ -0,0 +1,41 @@
+package com.nova41.bukkitdev.slr.benchmark;
+
+import java.util.Random;
+
+/**
+ * Synthetic data used by benchmarks.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {}
+
+    // A sequence of angles (degrees) between a player's aim and the attacked entity, drifting like a player tracking a target
+    static float[] angleSequence(Random random, int length) {
+        float[] angles = new float[length];
+        float angle = 10;
+        for (int i = 0; i <= length - 1; i++) {
+            angle = Math.max(0, Math.min(180, angle + (float) random.nextGaussian() * 3));
+            angles[i] = angle;
+        }
+        return angles;
+    }
+
+    // Vectors drawn from one gaussian cluster per category, grouped by category
+    // Returns the vectors stored one after another, and fills the category of each vector in the given array
+    static double[] clusteredDataset(Random random, int size, int categories, int dimension, int[] vectorCategories) {
+        double[][] clusterCenters = new double[categories][dimension];
+        for (double[] center : clusterCenters)
+            for (int j = 0; j <= dimension - 1; j++)
+                center[j] = random.nextDouble() * 100;
+
+        double[] dataset = new double[size * dimension];
+        for (int i = 0; i <= size - 1; i++) {
+            int category = (int) ((long) i * categories / size);
+            vectorCategories[i] = category;
+            for (int j = 0; j <= dimension - 1; j++)
+                dataset[i * dimension + j] = clusterCenters[category][j] + random.nextGaussian() * 10;
+        }
+        return dataset;
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.nova41.bukkitdev.slr.benchmark;
+
+import com.nova41.bukkitdev.slr.feature.FeatureAccumulator;
+import com.nova41.bukkitdev.slr.feature.FeaturePipeline;
+import com.nova41.bukkitdev.slr.util.FloatRingBuffer;
+import com.nova41.bukkitdev.slr.util.SLMaths;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks extracting features from angle sequences of different lengths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FeatureExtractionBenchmark {
+
+    // How many angles are in a sequence
+    @Param({"16", "128", "1024"})
+    public int length;
+
+    // Angles as stored by the angle logger, and as stored by older versions
+    private float[] angles;
+    private List<Float> boxedAngles;
+
+    // Attacks as logged by the angle logger, and pipelines extracting the default features and all built-in features
+    private FloatRingBuffer window;
+    private FeaturePipeline legacyPipeline;
+    private FeaturePipeline fullPipeline;
+
+    @Setup
+    public void setup() {
+        angles = BenchmarkData.angleSequence(new Random(41), length);
+        boxedAngles = new ArrayList<>(length);
+        for (float angle : angles)
+            boxedAngles.add(angle);
+
+        window = new FloatRingBuffer(length, 0, FeatureAccumulator.CHANNELS);
+        for (int i = 0; i <= length - 1; i++)
+            window.add(new float[]{angles[i], i * 2.5F, i * 0.5F}, i * 250L);
+        legacyPipeline = new FeaturePipeline(FeaturePipeline.LEGACY_FEATURES, FeaturePipeline.getBuiltInExtractors());
+        fullPipeline = new FeaturePipeline(new ArrayList<>(FeaturePipeline.getBuiltInExtractors().keySet()),
+                FeaturePipeline.getBuiltInExtractors());
+    }
+
+    @Benchmark
+    public double[] extractFeatures() {
+        return SLMaths.extractFeatures(angles, 0, length);
+    }
+
+    @Benchmark
+    public double[] extractFeaturesFromList() {
+        return SLMaths.extractFeatures(boxedAngles);
+    }
+
+    @Benchmark
+    public double[] extractLegacyFeatures() {
+        return legacyPipeline.extract(window);
+    }
+
+    @Benchmark
+    public double[] extractAllFeatures() {
+        return fullPipeline.extract(window);
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.nova41.bukkitdev.slr.benchmark;
+
+import com.nova41.bukkitdev.slr.model.KNearestNeighbourClassifier;
+import com.nova41.bukkitdev.slr.model.LVQNeuralNetwork;
+import com.nova41.bukkitdev.slr.model.LVQNeuralNetworkEpochStats;
+import com.nova41.bukkitdev.slr.model.LVQNeuralNetworkPredictResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks normalizing the dataset of, training and classifying with a LVQ neural network,
+ * with datasets of different sizes, category counts and dimensions. Classifying with a k-NN classifier
+ * over the same dataset is measured too, for comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LVQNeuralNetworkBenchmark {
+
+    // How many vectors are in the dataset
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    // How many categories the vectors are spread over
+    @Param({"2", "8"})
+    public int categories;
+
+    // How many features a vector has
+    @Param({"4", "16"})
+    public int dimension;
+
+    // Dataset stored one vector after another, and the category of each vector
+    private double[] dataset;
+    private int[] datasetCategories;
+
+    // A trained network, and vectors classified by it
+    private LVQNeuralNetwork trainedNetwork;
+    private KNearestNeighbourClassifier knnClassifier;
+    private double[][] queries;
+    private int nextQuery;
+
+    // A network with normalized dataset and initialized output layer, trained by one epoch per invocation
+    private LVQNeuralNetwork trainingNetwork;
+
+    // A network holding a fresh copy of the dataset for every invocation, normalized by the invocation
+    private LVQNeuralNetwork normalizingNetwork;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(41);
+        datasetCategories = new int[size];
+        dataset = BenchmarkData.clusteredDataset(random, size, categories, dimension, datasetCategories);
+
+        trainedNetwork = createNetwork();
+        trainedNetwork.normalize();
+        trainedNetwork.initializeOutputLayer();
+        trainedNetwork.train(100, 0, null);
+        knnClassifier = KNearestNeighbourClassifier.build(trainedNetwork, 5);
+
+        // queries are drawn around vectors in the dataset, so that they come from the same clusters
+        queries = new double[1024][];
+        for (int i = 0; i <= queries.length - 1; i++) {
+            int vector = random.nextInt(size);
+            queries[i] = new double[dimension];
+            for (int j = 0; j <= dimension - 1; j++)
+                queries[i][j] = dataset[vector * dimension + j] + random.nextGaussian();
+        }
+
+        trainingNetwork = createNetwork();
+        trainingNetwork.normalize();
+        trainingNetwork.initializeOutputLayer();
+    }
+
+    // Copying the dataset is not part of normalizing, so it is done outside the measured invocation
+    @Setup(Level.Invocation)
+    public void setupNormalizingNetwork() {
+        normalizingNetwork = createNetwork();
+    }
+
+    @Benchmark
+    public LVQNeuralNetwork normalize() {
+        normalizingNetwork.normalize();
+        return normalizingNetwork;
+    }
+
+    @Benchmark
+    public LVQNeuralNetworkEpochStats trainEpoch() {
+        return trainingNetwork.train();
+    }
+
+    @Benchmark
+    public LVQNeuralNetworkPredictResult predict() {
+        double[] query = queries[nextQuery];
+        nextQuery = (nextQuery + 1) & (queries.length - 1);
+        return trainedNetwork.predict(query);
+    }
+
+    @Benchmark
+    public LVQNeuralNetworkPredictResult knnPredict() {
+        double[] query = queries[nextQuery];
+        nextQuery = (nextQuery + 1) & (queries.length - 1);
+        return knnClassifier.predict(query);
+    }
+
+    // Create a network holding its own copy of the dataset
+    private LVQNeuralNetwork createNetwork() {
+        LVQNeuralNetwork network = new LVQNeuralNetwork(dimension, 0.5, 0.95, 0.01);
+        int start = 0;
+        for (int i = 1; i <= size; i++)
+            if (i == size || datasetCategories[i] != datasetCategories[start]) {
+                double[] vectors = new double[(i - start) * dimension];
+                System.arraycopy(dataset, start * dimension, vectors, 0, vectors.length);
+                network.addData(datasetCategories[start], vectors, i - start);
+                start = i;
+            }
+        return network;
+    }
+
+}
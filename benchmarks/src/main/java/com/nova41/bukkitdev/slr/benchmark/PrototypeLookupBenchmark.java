@@ -0,0 +1,92 @@
+package com.nova41.bukkitdev.slr.benchmark;
+
+import com.nova41.bukkitdev.slr.model.LVQNeuralNetwork;
+import com.nova41.bukkitdev.slr.model.LVQNeuralNetworkEpochStats;
+import com.nova41.bukkitdev.slr.model.LVQNeuralNetworkPredictResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks classifying with and training a LVQ neural network having many class centers (prototypes) per category,
+ * where looking up the nearest class center dominates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrototypeLookupBenchmark {
+
+    // How many class centers each category has at most
+    @Param({"1", "16", "64"})
+    public int prototypes;
+
+    // How many features a vector has
+    @Param({"4", "16"})
+    public int dimension;
+
+    // How many vectors are in the dataset, and how many categories they are spread over
+    private static final int SIZE = 10000;
+    private static final int CATEGORIES = 8;
+
+    // A trained network, and vectors classified by it
+    private LVQNeuralNetwork trainedNetwork;
+    private double[][] queries;
+    private int nextQuery;
+
+    // A network with normalized dataset and initialized output layer, trained by one epoch per invocation
+    private LVQNeuralNetwork trainingNetwork;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(41);
+        int[] datasetCategories = new int[SIZE];
+        double[] dataset = BenchmarkData.clusteredDataset(random, SIZE, CATEGORIES, dimension, datasetCategories);
+
+        trainedNetwork = createNetwork(dataset, datasetCategories);
+        trainedNetwork.train(100, 0, null);
+
+        // queries are drawn around vectors in the dataset, so that they come from the same clusters
+        queries = new double[1024][];
+        for (int i = 0; i <= queries.length - 1; i++) {
+            int vector = random.nextInt(SIZE);
+            queries[i] = new double[dimension];
+            for (int j = 0; j <= dimension - 1; j++)
+                queries[i][j] = dataset[vector * dimension + j] + random.nextGaussian();
+        }
+
+        trainingNetwork = createNetwork(dataset, datasetCategories);
+    }
+
+    @Benchmark
+    public LVQNeuralNetworkPredictResult predict() {
+        double[] query = queries[nextQuery];
+        nextQuery = (nextQuery + 1) & (queries.length - 1);
+        return trainedNetwork.predict(query);
+    }
+
+    @Benchmark
+    public LVQNeuralNetworkEpochStats trainEpoch() {
+        return trainingNetwork.train();
+    }
+
+    // Create a network holding the dataset, normalized and with its output layer initialized
+    private LVQNeuralNetwork createNetwork(double[] dataset, int[] datasetCategories) {
+        LVQNeuralNetwork network = new LVQNeuralNetwork(dimension, 0.5, 0.95, 0.01, prototypes);
+        int start = 0;
+        for (int i = 1; i <= SIZE; i++)
+            if (i == SIZE || datasetCategories[i] != datasetCategories[start]) {
+                double[] vectors = new double[(i - start) * dimension];
+                System.arraycopy(dataset, start * dimension, vectors, 0, vectors.length);
+                network.addData(datasetCategories[start], vectors, i - start);
+                start = i;
+            }
+        network.normalize();
+        network.initializeOutputLayer();
+        return network;
+    }
+
+}
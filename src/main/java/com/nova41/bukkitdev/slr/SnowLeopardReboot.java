@@ -1,15 +1,29 @@
 package com.nova41.bukkitdev.slr;
 
 import com.nova41.bukkitdev.slr.command.CommandManager;
+import com.nova41.bukkitdev.slr.feature.FeaturePipeline;
+import com.nova41.bukkitdev.slr.listener.PlayerAimSampler;
 import com.nova41.bukkitdev.slr.listener.PlayerAttackAngleLogger;
+import com.nova41.bukkitdev.slr.metrics.LatencyHistogram;
+import com.nova41.bukkitdev.slr.metrics.Metrics;
+import com.nova41.bukkitdev.slr.model.Classifier;
+import com.nova41.bukkitdev.slr.model.KNearestNeighbourClassifier;
 import com.nova41.bukkitdev.slr.model.LVQNeuralNetwork;
 import com.nova41.bukkitdev.slr.model.LVQNeuralNetworkPredictResult;
+import com.nova41.bukkitdev.slr.model.LVQNeuralNetworkScalingMode;
 import com.nova41.bukkitdev.slr.model.LVQNeuralNetworkSummary;
-import com.nova41.bukkitdev.slr.model.LabeledData;
+import com.nova41.bukkitdev.slr.model.Verdict;
+import com.nova41.bukkitdev.slr.storage.DumpRecord;
+import com.nova41.bukkitdev.slr.storage.DumpWriter;
+import com.nova41.bukkitdev.slr.storage.ModelCheckpoint;
+import com.nova41.bukkitdev.slr.storage.SampleStore;
+import com.nova41.bukkitdev.slr.task.ClassificationScanner;
+import com.nova41.bukkitdev.slr.task.ClassificationSink;
+import com.nova41.bukkitdev.slr.task.SamplingSession;
+import com.nova41.bukkitdev.slr.util.FloatRingBuffer;
 import com.nova41.bukkitdev.slr.util.SLFiles;
 import com.nova41.bukkitdev.slr.util.SLMaths;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.bukkit.ChatColor;
 import org.bukkit.Location;
@@ -26,8 +40,14 @@ import org.bukkit.plugin.java.JavaPlugin;
 import java.io.File;
 import java.io.IOException;
 import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * SnowLeopardR - a rebooted version of SnowLeopard
@@ -40,21 +60,46 @@ public class SnowLeopardReboot extends JavaPlugin {
     public static String DIRNAME_CATEGORY = "category";         // Directory containing all learned categories
     public static String DIRNAME_DUMPED_DATA = "dumped_data";   // Directory containing dumped angle sequence and features
 
-    // How many features are there in our dataset; 4 currently
-    public static int FEATURE_COUNT = 4;
+    // Keys in config.yml of the parameters shaping the trained network, including whether angles are sampled between attacks
+    // as it changes what players are compared with. A checkpoint saved with other values is not restored
+    private static final List<String> MODEL_PARAMETERS = Arrays.asList(
+            "LVQNN_parameters.step_size", "LVQNN_parameters.step_dec_rate", "LVQNN_parameters.min_step_size",
+            "LVQNN_parameters.prototypes_per_category", "LVQNN_parameters.scaling",
+            "LVQNN_train.epoch", "LVQNN_train.tolerance", "LVQNN_train.threads", "aim_sampler.enabled");
+
+    // Pipeline extracting features from angle sequences; the dimension of our dataset is the number of features
+    private FeaturePipeline featurePipeline;
+
+    // Identity of the features and how angles are sampled, stored with samples so that samples made of other features
+    // (or of angles sampled another way) are never read into the dataset
+    private int featureSet;
 
     // Built-in neural network for category classification
     private volatile LVQNeuralNetwork neuralNetwork;
 
+    // Classifier classifying players, selected in config.yml: the network itself, or a k-NN classifier over its dataset
+    // Replaced together with the network
+    private volatile Classifier classifier;
+
     // Map category names to an integer, because for the network, a class is an integer, not a string
+    // Replaced together with the network when it is rebuilt; only accessed on the main thread
     private Map<String, Integer> categoryNameMap = new HashMap<>();
 
+    // Whether the network is being rebuilt, or new samples are being learned into it, in the background
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
     // Logger for logging angle sequence produced by players
     private PlayerAttackAngleLogger angleLogger;
 
     // Manager managing all sub commands of the plugin
     private CommandManager commandManager;
 
+    // Writer saving dumped angle sequences in the background
+    private DumpWriter dumpWriter;
+
+    // Task classifying every attacking player in the background; null if disabled in config.yml
+    private ClassificationScanner classificationScanner;
+
     public void onEnable() {
         // Initialize data folder
         try {
@@ -66,13 +111,74 @@ public class SnowLeopardReboot extends JavaPlugin {
             e.printStackTrace();
         }
 
-        // Rebuild the built-in neural network with parameters specified in config.yml
-        rebuildNetworkWithDataset();
+        // Features extracted from angle sequences, as specified in config.yml
+        try {
+            List<String> features = getConfig().getStringList("features");
+            featurePipeline = new FeaturePipeline(features.isEmpty() ? FeaturePipeline.LEGACY_FEATURES : features,
+                    FeaturePipeline.getBuiltInExtractors());
+        } catch (IllegalArgumentException e) {
+            getLogger().severe("Invalid features in config.yml (" + e.getMessage() + "). Using default features instead");
+            featurePipeline = new FeaturePipeline(FeaturePipeline.LEGACY_FEATURES, FeaturePipeline.getBuiltInExtractors());
+        }
+        featureSet = SampleStore.featureSetOf(featurePipeline.getNames(), getConfig().getBoolean("aim_sampler.enabled"));
+
+        // Writer saving dumped angle sequences in the background
+        int queue_capacity = getConfig().getInt("dumper.queue_capacity");
+        int batch_size = getConfig().getInt("dumper.batch_size");
+        long segment_size = getConfig().getLong("dumper.segment_size");
+        dumpWriter = new DumpWriter(new File(getDataFolder(), DIRNAME_DUMPED_DATA).toPath(), getLogger(), queue_capacity, batch_size, segment_size);
+
+        // Restore the built-in neural network from the last checkpoint,
+        // or rebuild it with parameters specified in config.yml if there isn't an up-to-date one
+        // The network stays empty, i.e. classifies nothing, until it is rebuilt
+        // The k-NN classifier needs the whole dataset, which is not saved in checkpoints, so the network is always rebuilt for it
+        if (usesKNearestNeighbour() || !loadCheckpoint()) {
+            neuralNetwork = createNetwork();
+            classifier = neuralNetwork;
+            rebuildNetworkWithDataset();
+        }
 
         // Logger for logging angle sequence produced by players
-        angleLogger = new PlayerAttackAngleLogger();
+        int buffer_size = getConfig().getInt("logger.buffer_size");
+        long buffer_window = getConfig().getLong("logger.buffer_window");
+        angleLogger = new PlayerAttackAngleLogger(featurePipeline, buffer_size, buffer_window);
         getServer().getPluginManager().registerEvents(angleLogger, this);
 
+        // Sample angles toward combat targets whenever players move, in addition to angles of attacks
+        if (getConfig().getBoolean("aim_sampler.enabled")) {
+            long interval = getConfig().getLong("aim_sampler.interval");
+            long target_timeout = getConfig().getLong("aim_sampler.target_timeout");
+            getServer().getPluginManager().registerEvents(new PlayerAimSampler(angleLogger, interval, target_timeout), this);
+        }
+
+        // Classify every attacking player in the background
+        if (getConfig().getBoolean("scanner.enabled")) {
+            long window = getConfig().getLong("scanner.window");
+            int min_attacks = getConfig().getInt("scanner.min_attacks");
+            double tick_budget = getConfig().getDouble("scanner.tick_budget");
+            boolean parallel_predict = getConfig().getBoolean("scanner.parallel_predict");
+            classificationScanner = new ClassificationScanner(this, angleLogger, () -> classifier,
+                    reportingSink(getConfig().getStringList("scanner.report_categories")), window, min_attacks, tick_budget, parallel_predict);
+            getServer().getScheduler().runTaskTimer(this, classificationScanner, 1L, 1L);
+        }
+
+        // Gauges of angles buffered by the logger, and the metrics written periodically for scrapers
+        Metrics.REGISTRY.gauge("slr_tracked_players", "Players whose angles are kept by the logger", angleLogger::getTrackedPlayerCount);
+        Metrics.REGISTRY.gauge("slr_buffered_angles", "Angles buffered for all players", angleLogger::getBufferedAngleCount);
+        Metrics.REGISTRY.gauge("slr_buffered_angles_max", "Largest number of angles buffered for a single player", angleLogger::getMaxBufferedAngleCount);
+        Metrics.REGISTRY.gauge("slr_buffer_bytes", "Memory taken by the angle buffers of all players", angleLogger::getBufferedBytes);
+        long export_interval = getConfig().getLong("metrics.export_interval");
+        if (export_interval > 0) {
+            File metricsFile = new File(getDataFolder(), getConfig().getString("metrics.file", "metrics.prom"));
+            getServer().getScheduler().runTaskTimerAsynchronously(this, () -> {
+                try {
+                    Metrics.REGISTRY.writePrometheus(metricsFile.toPath());
+                } catch (IOException e) {
+                    getLogger().warning("Unable to write metrics: " + e.getMessage());
+                }
+            }, export_interval * 20L, export_interval * 20L);
+        }
+
         // Manager managing all sub commands of the plugin
         commandManager = new CommandManager(this, "slr");
 
@@ -80,61 +186,304 @@ public class SnowLeopardReboot extends JavaPlugin {
         registerCommands();
     }
 
+    public void onDisable() {
+        // Write dumps still waiting in the queue
+        if (dumpWriter != null)
+            dumpWriter.close();
+    }
+
     // Rebuild the built-in neural network with parameters specified in config.yml and dataset stored in category folder
-    @SuppressWarnings("unchecked")
-    private void rebuildNetworkWithDataset() {
-        // Build the network with parameters specified in config.yml
+    // The dataset is read and the network is trained off the main thread. The current network keeps classifying players
+    // until the new one is trained, then both the network and category mappings are swapped on the main thread.
+    // Return false if the network is already being rebuilt.
+    private boolean rebuildNetworkWithDataset() {
+        if (!rebuilding.compareAndSet(false, true))
+            return false;
+
+        getServer().getScheduler().runTaskAsynchronously(this, this::rebuildWithDataset);
+        return true;
+    }
+
+    // Rebuild the network on the current thread, which must not be the main thread. The caller must have set the rebuilding flag,
+    // which is cleared by the swap on the main thread, so that no samples are learned into the network being replaced
+    private void rebuildWithDataset() {
+        boolean swapScheduled = false;
+        try {
+            LVQNeuralNetwork network = createNetwork();
+            long startTime = System.nanoTime();
+            Map<String, Integer> categories = readDataset(network, Collections.emptyMap());
+            Metrics.DATASET_LOAD.recordSince(startTime);
+            if (categories == null)
+                return;
+
+            if (!categories.isEmpty()) {
+                int epoch = getConfig().getInt("LVQNN_train.epoch");
+                double tolerance = getConfig().getDouble("LVQNN_train.tolerance");
+                int threads = getConfig().getInt("LVQNN_train.threads");
+                network.normalize();
+                network.initializeOutputLayer();
+
+                // train online on this thread, or in batch mode on a pool if more threads are requested
+                ForkJoinPool pool = threads == 1 ? null : new ForkJoinPool(threads <= 0 ? Runtime.getRuntime().availableProcessors() : threads);
+                try {
+                    network.train(epoch, tolerance, pool);
+                } finally {
+                    if (pool != null)
+                        pool.shutdown();
+                }
+
+                // save the trained network so that it can be restored next time the plugin is enabled
+                try {
+                    new ModelCheckpoint(network.getSnapshot(), categories, featurePipeline.getNames(), getModelParameters()).save(new File(getDataFolder(), ModelCheckpoint.FILE_NAME).toPath());
+                } catch (IOException e) {
+                    getLogger().severe("Unable to save model checkpoint");
+                    e.printStackTrace();
+                }
+            }
+
+            // the k-NN classifier, if used, indexes the dataset scaled by the trained network
+            Classifier newClassifier = createClassifier(network);
+
+            // swap in the new network on the main thread, where category mappings are used
+            getServer().getScheduler().runTask(this, () -> {
+                try {
+                    neuralNetwork = network;
+                    classifier = newClassifier;
+                    categoryNameMap = new HashMap<>(categories);
+                    angleLogger.clearVerdicts();
+                    getLogger().info("Rebuilt the network with " + categories.size() + " category(s)");
+                } finally {
+                    rebuilding.set(false);
+                }
+            });
+            swapScheduled = true;
+        } finally {
+            if (!swapScheduled)
+                rebuilding.set(false);
+        }
+    }
+
+    // Read dataset from category folder into the given network, reading category files in parallel
+    // Categories in knownCategories keep their ids, e.g. those of a restored network; other categories get new ids
+    // Return mappings from category names to the ids they are added to the network with, or null if the folder can't be read
+    private Map<String, Integer> readDataset(LVQNeuralNetwork network, Map<String, Integer> knownCategories) {
+        // Convert categories saved by older versions to sample stores
+        importYamlCategories();
+
+        File[] categoryFiles = new File(getDataFolder(), DIRNAME_CATEGORY).listFiles(
+                (dir, name) -> FilenameUtils.isExtension(name, SampleStore.FILE_EXTENSION));
+        if (categoryFiles == null) {
+            getLogger().severe("Unable to read dataset: 'category' is not a directory or an I/O error occurred");
+            return null;
+        }
+
+        ConcurrentMap<String, double[]> dataset = Arrays.stream(categoryFiles).parallel()
+                .map(categoryFile -> {
+                    try {
+                        return new AbstractMap.SimpleImmutableEntry<>(
+                                FilenameUtils.removeExtension(categoryFile.getName()), SampleStore.read(categoryFile.toPath(), featurePipeline.getDimension(), featureSet));
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        getLogger().severe("Unable to read dataset from '" + categoryFile.getName() + "' (" + e.getMessage() + ")");
+                        return null;
+                    }
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toConcurrentMap(Map.Entry::getKey, Map.Entry::getValue));
+
+        // The network distinguish different classes with their category id (an integer)
+        // So we need to map the category's name (string) to category id (an integer) for the network
+        // New categories are numbered in order of their names, so ids don't depend on which file is read first
+        Map<String, Integer> categories = new HashMap<>();
+        int nextCategoryID = knownCategories.values().stream().mapToInt(id -> id + 1).max().orElse(0);
+        for (String categoryName : new TreeSet<>(dataset.keySet())) {
+            Integer categoryID = knownCategories.get(categoryName);
+            if (categoryID == null)
+                categoryID = nextCategoryID++;
+            categories.put(categoryName, categoryID);
+
+            // Add the parsed data to our dataset
+            double[] categorySamples = dataset.get(categoryName);
+            network.addData(categoryID, categorySamples, categorySamples.length / featurePipeline.getDimension());
+        }
+        return categories;
+    }
+
+    // Create an untrained network with parameters specified in config.yml
+    private LVQNeuralNetwork createNetwork() {
         double step_size = getConfig().getDouble("LVQNN_parameters.step_size");
         double step_dec_rate = getConfig().getDouble("LVQNN_parameters.step_dec_rate");
         double min_step_size = getConfig().getDouble("LVQNN_parameters.min_step_size");
-        neuralNetwork = new LVQNeuralNetwork(SnowLeopardReboot.FEATURE_COUNT, step_size, step_dec_rate, min_step_size);
+        int prototypes_per_category = Math.max(1, getConfig().getInt("LVQNN_parameters.prototypes_per_category"));
+        LVQNeuralNetwork network = new LVQNeuralNetwork(featurePipeline.getDimension(), step_size, step_dec_rate, min_step_size, prototypes_per_category);
+        network.setScalingMode(getScalingMode());
+        return network;
+    }
 
-        // Read dataset from category folder and train the network with the dataset
-        unregisterAllCategories();
+    // Whether players are classified by a k-NN classifier instead of the network, as specified in config.yml
+    private boolean usesKNearestNeighbour() {
+        return getConfig().getString("classifier.engine", "lvq").equalsIgnoreCase("knn");
+    }
 
-        File[] categoryFiles = new File(getDataFolder(), "category").listFiles();
-        if (categoryFiles == null) {
-            getLogger().severe("Unable to read dataset: 'category' is not a directory or an I/O error occurred");
-            return;
+    // Create the classifier specified in config.yml for a trained network
+    private Classifier createClassifier(LVQNeuralNetwork network) {
+        if (!usesKNearestNeighbour())
+            return network;
+        return KNearestNeighbourClassifier.build(network, Math.max(1, getConfig().getInt("classifier.k")));
+    }
+
+    // Get how features are scaled from the config, falling back to min-max scaling if it's unknown
+    private LVQNeuralNetworkScalingMode getScalingMode() {
+        String scaling = getConfig().getString("LVQNN_parameters.scaling", "min_max");
+        try {
+            return LVQNeuralNetworkScalingMode.valueOf(scaling.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            getLogger().warning("Unknown scaling '" + scaling + "', using min_max");
+            return LVQNeuralNetworkScalingMode.MIN_MAX;
+        }
+    }
+
+    // Get the parameters in config.yml that shape the trained network, which are saved with model checkpoints
+    private Map<String, String> getModelParameters() {
+        Map<String, String> parameters = new TreeMap<>();
+        for (String key : MODEL_PARAMETERS)
+            parameters.put(key, String.valueOf(getConfig().getString(key)));
+        return parameters;
+    }
+
+    // Restore the network and category mappings from the checkpoint saved after the last training
+    // Return false if there is no checkpoint, or the dataset or config has changed since the checkpoint was saved
+    private boolean loadCheckpoint() {
+        File checkpointFile = new File(getDataFolder(), ModelCheckpoint.FILE_NAME);
+        if (!checkpointFile.exists())
+            return false;
+
+        File[] categoryFiles = new File(getDataFolder(), DIRNAME_CATEGORY).listFiles(
+                (dir, name) -> FilenameUtils.isExtension(name, new String[]{SampleStore.FILE_EXTENSION, "yml"}));
+        if (categoryFiles == null || Arrays.stream(categoryFiles).anyMatch(file -> file.lastModified() > checkpointFile.lastModified())) {
+            getLogger().info("Dataset has changed since the model checkpoint was saved");
+            return false;
+        }
+
+        try {
+            ModelCheckpoint checkpoint = ModelCheckpoint.load(checkpointFile.toPath());
+            if (!checkpoint.getFeatureNames().equals(featurePipeline.getNames())) {
+                getLogger().info("Features have changed since the model checkpoint was saved");
+                return false;
+            }
+            if (checkpoint.getSnapshot().getScalingMode() != getScalingMode()) {
+                getLogger().info("Scaling has changed since the model checkpoint was saved");
+                return false;
+            }
+            if (!checkpoint.getParameters().equals(getModelParameters())) {
+                getLogger().info("Learning parameters have changed since the model checkpoint was saved");
+                return false;
+            }
+
+            // a category added or deleted since the checkpoint was saved isn't known by the checkpoint, or is still classified into
+            Set<String> categoryNames = Arrays.stream(categoryFiles)
+                    .map(file -> FilenameUtils.removeExtension(file.getName()))
+                    .collect(Collectors.toSet());
+            if (!checkpoint.getCategoryNameMap().keySet().equals(categoryNames)) {
+                getLogger().info("Categories have changed since the model checkpoint was saved");
+                return false;
+            }
+
+            LVQNeuralNetwork network = createNetwork();
+            network.loadSnapshot(checkpoint.getSnapshot());
+
+            neuralNetwork = network;
+            classifier = network;
+            categoryNameMap = new HashMap<>(checkpoint.getCategoryNameMap());
+            getLogger().info("Restored the network from model checkpoint (" + checkpoint.getSnapshot().getCenterCount() + " neuron(s))");
+            restoreDataset(checkpoint);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            getLogger().warning("Unable to load model checkpoint: " + e.getMessage());
+            return false;
         }
+    }
 
-        if (categoryFiles.length == 0)
+    // Read the dataset back into a copy of the network restored from a checkpoint, without retraining it, then swap the copy in
+    // on the main thread. The dataset isn't saved in checkpoints, but the network replays it when learning new samples
+    // Samples are not learned until the dataset is restored. If any category can't be read, the network is rebuilt instead
+    private void restoreDataset(ModelCheckpoint checkpoint) {
+        if (!rebuilding.compareAndSet(false, true))
             return;
 
-        for (File categoryFile : categoryFiles)
+        getServer().getScheduler().runTaskAsynchronously(this, () -> {
+            // clearing the flag is left to the swap on the main thread, or to the rebuild
+            boolean handedOver = false;
             try {
-                FileConfiguration categoryFileYaml = new YamlConfiguration();
-                categoryFileYaml.load(categoryFile);
-                List<List<Double>> categorySamples = (List<List<Double>>) categoryFileYaml.getList("samples");
+                LVQNeuralNetwork network = createNetwork();
+                network.loadSnapshot(checkpoint.getSnapshot());
+                long startTime = System.nanoTime();
+                Map<String, Integer> categories = readDataset(network, checkpoint.getCategoryNameMap());
+                Metrics.DATASET_LOAD.recordSince(startTime);
+                if (categories == null || !categories.equals(checkpoint.getCategoryNameMap())) {
+                    getLogger().warning("Unable to restore the dataset of the model checkpoint. Rebuilding the network...");
+                    handedOver = true;
+                    rebuildWithDataset();
+                    return;
+                }
 
-                // The network distinguish different classes with their category id (an integer)
-                // So we need to map the category's name (string) to category id (an integer) for the network
-                String categoryName = FilenameUtils.removeExtension(categoryFile.getName());
-                if (!categoryNameMap.containsKey(categoryName))
-                    registerCategory(categoryName);
-                int categoryID = categoryNameMap.get(categoryName);
+                getServer().getScheduler().runTask(this, () -> {
+                    try {
+                        neuralNetwork = network;
+                        classifier = network;
+                    } finally {
+                        rebuilding.set(false);
+                    }
+                });
+                handedOver = true;
+            } finally {
+                if (!handedOver)
+                    rebuilding.set(false);
+            }
+        });
+    }
 
-                // Add the parsed data to our dataset
-                for (List<Double> samples : categorySamples)
-                    neuralNetwork.addData(new LabeledData(categoryID, samples.stream().mapToDouble(e -> e).toArray()));
+    // Convert every category saved as YAML (category/<name>.yml) to a sample store, then rename the YAML file to <name>.yml.imported
+    @SuppressWarnings("unchecked")
+    private void importYamlCategories() {
+        File[] yamlFiles = new File(getDataFolder(), DIRNAME_CATEGORY).listFiles((dir, name) -> FilenameUtils.isExtension(name, "yml"));
+        if (yamlFiles == null)
+            return;
 
-            } catch (InvalidConfigurationException | IOException e) {
-                e.printStackTrace();
-                getLogger().severe("Unable to read dataset from '" + categoryFile.getName() + "'");
+        for (File yamlFile : yamlFiles) {
+            String categoryName = FilenameUtils.removeExtension(yamlFile.getName());
+            File storeFile = new File(yamlFile.getParentFile(), categoryName + "." + SampleStore.FILE_EXTENSION);
+            if (storeFile.exists()) {
+                getLogger().warning("Not importing '" + yamlFile.getName() + "' because '" + storeFile.getName() + "' already exists");
+                continue;
             }
 
-        // train asynchronously
-        getServer().getScheduler().runTaskAsynchronously(this, () -> {
-            int epoch = getConfig().getInt("LVQNN_train.epoch");
-            neuralNetwork.normalize();
-            neuralNetwork.initializeOutputLayer();
-
-            // (not sure) i don't think neuralNetwork will change its reference during training...??
-            synchronized (neuralNetwork) {
-                for (int i = 0; i <= epoch - 1; i++)
-                    neuralNetwork.train();
+            try {
+                FileConfiguration categoryFileYaml = new YamlConfiguration();
+                categoryFileYaml.load(yamlFile);
+                List<List<Double>> categorySamples = (List<List<Double>>) categoryFileYaml.getList("samples");
+                if (categorySamples == null) {
+                    getLogger().warning("Not importing '" + yamlFile.getName() + "' because it has no samples");
+                    continue;
+                }
+
+                // write to a temporary file first so that an interrupted import leaves no half-written store behind
+                // older versions only sampled the legacy features from attacks, so the store is refused if other features are used
+                File tempFile = new File(yamlFile.getParentFile(), categoryName + ".tmp");
+                Files.deleteIfExists(tempFile.toPath());
+                SampleStore.append(tempFile.toPath(), FeaturePipeline.LEGACY_FEATURES.size(),
+                        SampleStore.featureSetOf(FeaturePipeline.LEGACY_FEATURES, false), categorySamples.stream()
+                        .map(sample -> sample.stream().mapToDouble(e -> e).toArray())
+                        .toArray(double[][]::new));
+                Files.move(tempFile.toPath(), storeFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                Files.move(yamlFile.toPath(), new File(yamlFile.getParentFile(), yamlFile.getName() + ".imported").toPath());
+
+                getLogger().info("Imported " + categorySamples.size() + " samples from '" + yamlFile.getName() + "'");
+            } catch (InvalidConfigurationException | IOException | IllegalArgumentException e) {
+                e.printStackTrace();
+                getLogger().severe("Unable to import dataset from '" + yamlFile.getName() + "'");
             }
-        });
+        }
     }
 
     private void registerCommands() {
@@ -149,6 +498,7 @@ public class SnowLeopardReboot extends JavaPlugin {
             sender.sendMessage(ChatColor.YELLOW + "/slr rebuild" + ChatColor.WHITE + " Reload dataset and rebuild the network");
             sender.sendMessage(ChatColor.YELLOW + "/slr reload" + ChatColor.WHITE + " Reload configurations");
             sender.sendMessage(ChatColor.YELLOW + "/slr test <player> [duration]" + ChatColor.WHITE + " Classify motion of a player");
+            sender.sendMessage(ChatColor.YELLOW + "/slr metrics" + ChatColor.WHITE + " Display latencies and memory usage of the plugin");
             sender.sendMessage(ChatColor.YELLOW + "/slr mob" + ChatColor.WHITE + " Spawn a punchbag villager (50 hearts) for sampling or testing");
         });
 
@@ -174,7 +524,7 @@ public class SnowLeopardReboot extends JavaPlugin {
             if (CommandValidate.notPlayer(sender)) return;
 
             Player player = (Player) sender;
-            if (!angleLogger.getRegisteredPlayers().contains(player.getName())) {
+            if (!angleLogger.isRegistered(player)) {
                 sender.sendMessage(ChatColor.RED + "You haven't started logging angles for " + ChatColor.YELLOW + player.getName());
                 return;
             }
@@ -183,43 +533,57 @@ public class SnowLeopardReboot extends JavaPlugin {
             sender.sendMessage(ChatColor.RED + "Stopped logging angles for " + ChatColor.YELLOW + player.getName());
 
             // save logged angle sequence
-            try {
-                List<Float> angleSequence = angleLogger.getLoggedAngles(player);
-                double[] extractedFeatures = SLMaths.extractFeatures(angleSequence);
-
-                // specify the name of file containing the sequence and features extracted from it
-                String saveFileName = SnowLeopardReboot.DIRNAME_DUMPED_DATA + File.separator + System.currentTimeMillis() + ".yml";
-                // write the sequence and the features to the file
-                File saveFile = new File(getDataFolder(), saveFileName);
-                if (!saveFile.createNewFile())
-                    throw new IOException();
-
-                FileConfiguration saveFileYaml = new YamlConfiguration();
-                saveFileYaml.set("feature", extractedFeatures);
-                saveFileYaml.set("raw_angles", angleSequence);
-                saveFileYaml.save(saveFile);
-
-                sender.sendMessage(ChatColor.GREEN + "Data have been saved to " + ChatColor.YELLOW + saveFileName
-                        + ChatColor.GREEN + " (" + angleSequence.size() + " samples).");
-
-                // The sequence saved to disk is no longer needed to be kept in memory.
-                angleLogger.clearLoggedAngles(player);
-            } catch (IOException e) {
-                getLogger().severe("Unable to dump vector and angles of player '" + player.getName() + "'");
-                e.printStackTrace();
-                sender.sendMessage(ChatColor.RED + "Failed to save logged angles due to an I/O error");
+            FloatRingBuffer angleSequence = angleLogger.takeLoggedAngles(player);
+            if (angleSequence == null || angleSequence.size() <= 1) {
+                sender.sendMessage(ChatColor.RED + "Not enough angles have been logged for " + ChatColor.YELLOW + player.getName());
+                return;
             }
+            double[] extractedFeatures = featurePipeline.extract(angleSequence);
+
+            // the sequence and the features are written to dumped_data by a background thread
+            if (!dumpWriter.offer(new DumpRecord(System.currentTimeMillis(), player.getName(), extractedFeatures, angleSequence.toArray()))) {
+                sender.sendMessage(ChatColor.RED + "Failed to save logged angles: too many pending dumps, try again later");
+                return;
+            }
+            sender.sendMessage(ChatColor.GREEN + "Data will be saved to " + ChatColor.YELLOW + SnowLeopardReboot.DIRNAME_DUMPED_DATA
+                    + ChatColor.GREEN + " (" + angleSequence.size() + " samples).");
+        });
+
+        // /slr metrics
+        commandManager.register("metrics", (sender, params) -> {
+            sender.sendMessage(ChatColor.AQUA + "Latencies (count, p50 / p99 / max):");
+            for (LatencyHistogram histogram : Metrics.REGISTRY.getHistograms())
+                sender.sendMessage(ChatColor.AQUA + "  " + histogram.getName() + ": " + ChatColor.YELLOW + histogram.getCount() + ", "
+                        + formatNanos(histogram.getPercentile(0.5)) + " / " + formatNanos(histogram.getPercentile(0.99))
+                        + " / " + formatNanos(histogram.getMax()));
+            sender.sendMessage(ChatColor.AQUA + "Counters:");
+            Metrics.REGISTRY.getCounters().forEach(counter ->
+                    sender.sendMessage(ChatColor.AQUA + "  " + counter.getName() + ": " + ChatColor.YELLOW + counter.get()));
+            sender.sendMessage(ChatColor.AQUA + "Gauges:");
+            Metrics.REGISTRY.getGauges().forEach(gauge ->
+                    sender.sendMessage(ChatColor.AQUA + "  " + gauge.getName() + ": " + ChatColor.YELLOW + (long) gauge.get()));
         });
 
         // /slr info
         commandManager.register("info", (sender, params) -> {
             LVQNeuralNetworkSummary summary = neuralNetwork.getSummaryStatistics();
+            Classifier currentClassifier = classifier;
+            sender.sendMessage(ChatColor.AQUA + "Classifier: " + ChatColor.YELLOW + (currentClassifier instanceof KNearestNeighbourClassifier
+                    ? "k-NN (k = " + ((KNearestNeighbourClassifier) currentClassifier).getK() + ", "
+                    + ((KNearestNeighbourClassifier) currentClassifier).getVectorCount() + " samples)"
+                    : "LVQ neural network"));
             sender.sendMessage(ChatColor.AQUA + "Neural network layer statistics: ");
             sender.sendMessage(ChatColor.AQUA + "  Dataset size: " + ChatColor.YELLOW + summary.getInputCount());
             sender.sendMessage(ChatColor.AQUA + "  Output layer: " + ChatColor.YELLOW + summary.getOutputCount() + " neuron(s)");
             sender.sendMessage(ChatColor.AQUA + "Neural network learning statistics:");
-            sender.sendMessage(ChatColor.AQUA + "  Epoch: " + ChatColor.YELLOW + summary.getEpoch());
+            sender.sendMessage(ChatColor.AQUA + "  Epoch: " + ChatColor.YELLOW + summary.getEpoch()
+                    + ChatColor.AQUA + " (" + ChatColor.YELLOW + summary.getStopReason().name().toLowerCase() + ChatColor.AQUA + ")");
             sender.sendMessage(ChatColor.AQUA + "  Current step size: " + ChatColor.YELLOW + summary.getCurrentStepSize());
+            if (summary.getLastEpoch() != null) {
+                sender.sendMessage(ChatColor.AQUA + "  Last displacement: " + ChatColor.YELLOW + summary.getLastEpoch().getDisplacement());
+                sender.sendMessage(ChatColor.AQUA + "  Misclassification rate: " + ChatColor.YELLOW
+                        + SLMaths.round(summary.getLastEpoch().getMisclassificationRate() * 100, 2, RoundingMode.HALF_UP) + "%");
+            }
             sender.sendMessage(ChatColor.AQUA + "Category statistics:");
             sender.sendMessage(ChatColor.AQUA + "  Loaded: " + ChatColor.YELLOW + categoryNameMap.size());
             sender.sendMessage(ChatColor.AQUA + "  Mappings: ");
@@ -251,8 +615,10 @@ public class SnowLeopardReboot extends JavaPlugin {
 
         // /slr rebuild
         commandManager.register("rebuild", ((sender, params) -> {
-            rebuildNetworkWithDataset();
-            sender.sendMessage(ChatColor.GREEN + "Rebuilt neural network.");
+            if (rebuildNetworkWithDataset())
+                sender.sendMessage(ChatColor.GREEN + "Rebuilding neural network in the background. The current one is used until it's done.");
+            else
+                sender.sendMessage(ChatColor.RED + "Neural network is already being rebuilt or learning new samples.");
         }));
 
         // /slr test <player-name> <seconds>
@@ -281,16 +647,40 @@ public class SnowLeopardReboot extends JavaPlugin {
             // If the duration is not set, it would be the default duration specified in config.yml
             int duration = params.length == 1 ? getConfig().getInt("test.default_duration") : Integer.valueOf(params[1]);
 
-            sender.sendMessage(ChatColor.GREEN + "Attempting to sample motion of " + ChatColor.YELLOW + params[0]
-                    + ChatColor.GREEN + " for " + ChatColor.YELLOW + duration + ChatColor.GREEN + " seconds");
-            classifyPlayer(testPlayer, duration , result -> {
+            Consumer<Verdict> showVerdict = verdict -> {
                 // likelihood =  max possible difference - difference
+                LVQNeuralNetworkPredictResult result = verdict.getResult();
                 double likelihood = SLMaths.round(result.getLikelihood() * 100, 2, RoundingMode.HALF_UP);
+                long now = System.currentTimeMillis();
+                double confidence = SLMaths.round(verdict.getConfidence(now, getConfig().getLong("verdict.half_life")) * 100, 2, RoundingMode.HALF_UP);
 
                 sender.sendMessage(ChatColor.GREEN + "Neural network classification result:");
                 sender.sendMessage(ChatColor.GREEN + "  Best matched: " + ChatColor.YELLOW + getCategoryNameFromID(result.getCategory()));
                 sender.sendMessage(ChatColor.GREEN + "  Difference: " + ChatColor.YELLOW + result.getDifference());
                 sender.sendMessage(ChatColor.GREEN + "  Likelihood: " + ChatColor.YELLOW + likelihood + "%");
+                sender.sendMessage(ChatColor.GREEN + "  Confidence: " + ChatColor.YELLOW + confidence + "%"
+                        + ChatColor.GREEN + " (made " + ChatColor.YELLOW + (now - verdict.getTimestamp()) / 1000 + ChatColor.GREEN + " seconds ago)");
+            };
+
+            // The last verdict is shown at once if the player has not attacked since it was made and it is recent enough,
+            // unless a duration is given, which always samples the player for that long
+            if (params.length == 1) {
+                Verdict freshVerdict = angleLogger.getFreshVerdict(testPlayer, System.currentTimeMillis(), getConfig().getLong("verdict.max_age"));
+                if (freshVerdict != null) {
+                    showVerdict.accept(freshVerdict);
+                    return;
+                }
+            }
+
+            sender.sendMessage(ChatColor.GREEN + "Attempting to sample motion of " + ChatColor.YELLOW + params[0]
+                    + ChatColor.GREEN + " for " + ChatColor.YELLOW + duration + ChatColor.GREEN + " seconds");
+            classifyPlayer(sender, testPlayer, duration, verdict -> {
+                if (verdict == null) {
+                    sender.sendMessage(ChatColor.RED + "Unable to classify " + ChatColor.YELLOW + params[0]
+                            + ChatColor.RED + " because the player did not attack enough.");
+                    return;
+                }
+                showVerdict.accept(verdict);
             });
         });
 
@@ -313,10 +703,9 @@ public class SnowLeopardReboot extends JavaPlugin {
     }
 
     // Train the network. Tell the network there is a category waiting to be learned from player.
-    @SuppressWarnings("unchecked")
     public void trainNetwork(Player player, String category, int duration_to_generate_a_vector, int vector_per_category) {
         // Check if angle sequence of the given player is already being logged
-        if (angleLogger.getRegisteredPlayers().contains(player.getName())) {
+        if (angleLogger.isRegistered(player)) {
             player.sendMessage(ChatColor.RED + "Player is already in a sampling process. Please stop sampling first.");
             return;
         }
@@ -327,89 +716,155 @@ public class SnowLeopardReboot extends JavaPlugin {
                 + ChatColor.YELLOW + vector_per_category + ChatColor.GREEN + " vectors are needed in total)");
 
         /* FIRST. We need to get angle sequence of a player, and then extract features from the sequence */
+        /*        the session takes the angles logged in every window on the main thread, so no thread waits meanwhile */
+        long window = Math.max(1, (duration_to_generate_a_vector + 49) / 50);
+        new SamplingSession(angleLogger, featurePipeline, player, vector_per_category, vectors -> {
+            if (vectors.length == 0) {
+                player.sendMessage(ChatColor.RED + "No samples were taken because the player did not attack anybody.");
+                return;
+            }
+            player.sendMessage(ChatColor.GREEN + "Finished sampling player's motion. Saving samples...");
 
-        // do asynchronously
-        getServer().getScheduler().runTaskAsynchronously(this, () -> {
-            // vectors are stored here
-            double[][] vectors = new double[vector_per_category][SnowLeopardReboot.FEATURE_COUNT];
-
-            angleLogger.registerPlayer(player);
+            // the samples are learned into the live network too, unless it's being rebuilt (or learning is disabled)
+            int online_passes = getConfig().getInt("LVQNN_train.online_passes");
+            boolean learn = online_passes > 0 && rebuilding.compareAndSet(false, true);
+            LVQNeuralNetwork network = neuralNetwork;
+            Map<String, Integer> categories = new HashMap<>(categoryNameMap);
+            // a new category takes the id after the greatest one, as ids of removed categories leave gaps
+            if (!categories.containsKey(category))
+                categories.put(category, categories.values().stream().mapToInt(id -> id + 1).max().orElse(0));
 
-            // sample for the given times
-            for (int i = 1; i <= vector_per_category; i++) {
-                player.sendMessage(ChatColor.GREEN + "Sampling player's motion (" + i + "/" + vector_per_category + ")");
+            /* SECOND. Save the vector expressing properties of the sequence to disk. */
+            /*         our leopard will use these vectors to train the network */
+            getServer().getScheduler().runTaskAsynchronously(this, () -> {
                 try {
-                    // while we wait, the angleLogger is logging player's angles unweariedly
-                    Thread.sleep(duration_to_generate_a_vector);
-                } catch (InterruptedException e) {
+                    // get the file to be saved
+                    File saveFile = new File(getDataFolder(), SnowLeopardReboot.DIRNAME_CATEGORY + File.separator + category + "." + SampleStore.FILE_EXTENSION);
+
+                    // append vectors to the category if the category already exists
+                    if (saveFile.exists())
+                        player.sendMessage(ChatColor.GREEN + "Category " + ChatColor.YELLOW + category + ChatColor.GREEN
+                                + " already exists. Appending samples to the category...");
+                    SampleStore.append(saveFile.toPath(), featurePipeline.getDimension(), featureSet, vectors);
+
+                    player.sendMessage(ChatColor.GREEN + "Samples saved (" + vectors.length + "/" + vector_per_category + ").");
+                } catch (IOException e) {
+                    getLogger().severe("Unable to save sample for category '" + category + "'");
                     e.printStackTrace();
+                    player.sendMessage(ChatColor.RED + "Unable to save samples: " + e.getMessage());
+                    if (learn)
+                        rebuilding.set(false);
+                    return;
                 }
-                // get the angle sequence containing angles in the past duration_to_generate_a_vector milliseconds
-                List<Float> angleSequence = angleLogger.getLoggedAngles(player);
-                // do nothing if the player does not attack anybody in the past duration
-                if (angleSequence == null)
-                    break;
-                // extract the features from the sequence and save them to a temporary array
-                vectors[i - 1] = SLMaths.extractFeatures(angleSequence);
-                // clear saved angles to get ready for new angles
-                angleLogger.clearLoggedAngles(player);
-            }
-            angleLogger.unregisterPlayer(player);
-            player.sendMessage(ChatColor.GREEN + "Finished sampling player's motion. Saving samples...");
 
-            /* SECOND. Save the vector expressing properties of the sequence to disk. */
-            /*         our leopard will use these vectors to train the network */
-            try {
-                // get the file to be saved
-                File saveFile = new File(getDataFolder(), SnowLeopardReboot.DIRNAME_CATEGORY + File.separator + category + ".yml");
-                FileConfiguration saveFileYaml = new YamlConfiguration();
-
-                List<Double[]> samplesSection = new ArrayList<>();
-                // append vectors to the category if the category already exists
-                if (!saveFile.createNewFile()) {
-                    saveFileYaml.load(saveFile);
-                    samplesSection.addAll((Collection<? extends Double[]>) saveFileYaml.getList("samples"));
-                    player.sendMessage(ChatColor.GREEN + "Category " + ChatColor.YELLOW + category + ChatColor.GREEN
-                            + " already exists. Appending samples to the category...");
+                if (!learn) {
+                    player.sendMessage(ChatColor.GREEN + "Use " + ChatColor.YELLOW + "/slr rebuild" + ChatColor.GREEN + " to train the network with the samples.");
+                    return;
                 }
-                for (double[] vector : vectors)
-                    samplesSection.add(ArrayUtils.toObject(vector));
 
-                saveFileYaml.set("samples", samplesSection);
-                saveFileYaml.save(saveFile);
+                /* THIRD. Learn the vectors into the live network, starting from what it already knows */
+                /*        as with rebuilding, the flag is cleared only once the result is swapped in on the main thread */
+                boolean swapScheduled = false;
+                try {
+                    double[] data = new double[vectors.length * featurePipeline.getDimension()];
+                    for (int i = 0; i <= vectors.length - 1; i++)
+                        System.arraycopy(vectors[i], 0, data, i * featurePipeline.getDimension(), featurePipeline.getDimension());
+                    network.learn(categories.get(category), data, vectors.length, online_passes);
+                    Classifier newClassifier = createClassifier(network);
+
+                    try {
+                        new ModelCheckpoint(network.getSnapshot(), categories, featurePipeline.getNames(), getModelParameters()).save(new File(getDataFolder(), ModelCheckpoint.FILE_NAME).toPath());
+                    } catch (IOException e) {
+                        getLogger().severe("Unable to save model checkpoint");
+                        e.printStackTrace();
+                    }
+
+                    // the network already classifies with the new category, so its name is mapped on the main thread
+                    getServer().getScheduler().runTask(this, () -> {
+                        try {
+                            classifier = newClassifier;
+                            categoryNameMap = categories;
+                            angleLogger.clearVerdicts();
+                            player.sendMessage(ChatColor.GREEN + "Samples learned by the network.");
+                        } finally {
+                            rebuilding.set(false);
+                        }
+                    });
+                    swapScheduled = true;
+                } finally {
+                    if (!swapScheduled)
+                        rebuilding.set(false);
+                }
+            });
+        }).start(this, window);
+    }
 
-                player.sendMessage(ChatColor.GREEN + "Samples saved.");
-            } catch (IOException | InvalidConfigurationException e) {
-                getLogger().severe("Unable to save sample for category '" + category + "'");
-                e.printStackTrace();
-                player.sendMessage(ChatColor.RED + "Unable to save samples due to an I/O error");
-            }
-        });
+    // Format a latency with the unit fitting it best
+    private static String formatNanos(long nanos) {
+        if (nanos < 1_000)
+            return nanos + " ns";
+        if (nanos < 1_000_000)
+            return SLMaths.round(nanos / 1e3, 3, RoundingMode.HALF_UP) + " us";
+        return SLMaths.round(nanos / 1e6, 3, RoundingMode.HALF_UP) + " ms";
     }
 
-    // Let the network guess which category does the player result in
-    public void classifyPlayer(Player player, int duration, Consumer<LVQNeuralNetworkPredictResult> consumer) {
+    // Sample the player for the given duration (seconds) and let the classifier guess which category does the player result in.
+    // The consumer is called with null if the player did not attack enough, and not at all if the player can't be sampled
+    // or classified, which the sender is told about
+    public void classifyPlayer(CommandSender sender, Player player, int duration, Consumer<Verdict> consumer) {
         // Check if angle sequence of the given player is already being logged
-        if (angleLogger.getRegisteredPlayers().contains(player.getName())) {
-            player.sendMessage(ChatColor.YELLOW + player.getName() + ChatColor.RED + " is already in a sampling process. Please stop sampling first.");
+        if (angleLogger.isRegistered(player)) {
+            sender.sendMessage(ChatColor.YELLOW + player.getName() + ChatColor.RED + " is already in a sampling process. Please stop sampling first.");
             return;
         }
 
         angleLogger.registerPlayer(player);
         getServer().getScheduler().runTaskLater(this, () -> {
-            List<Float> angleSequence = angleLogger.getLoggedAngles(player);
+            FloatRingBuffer angleSequence = angleLogger.takeLoggedAngles(player);
             angleLogger.unregisterPlayer(player);
-            angleLogger.clearLoggedAngles(player);
 
-            // Call the consumer with classification result
-            double[] extractedFeatures = SLMaths.extractFeatures(angleSequence);
-            consumer.accept(neuralNetwork.predict(extractedFeatures));
+            if (angleSequence == null || angleSequence.size() <= 1) {
+                consumer.accept(null);
+                return;
+            }
+
+            // Remember the classification result as the verdict of the player, and call the consumer with it
+            double[] extractedFeatures = featurePipeline.extract(angleSequence);
+            LVQNeuralNetworkPredictResult result;
+            try {
+                result = classifier.predict(extractedFeatures);
+            } catch (IllegalStateException e) {
+                // the classifier has not been built yet
+                sender.sendMessage(ChatColor.RED + "Unable to classify " + ChatColor.YELLOW + player.getName()
+                        + ChatColor.RED + " because the classifier is not ready (" + e.getMessage() + ")");
+                return;
+            }
+            Verdict verdict = new Verdict(extractedFeatures, result, System.currentTimeMillis());
+            angleLogger.markClean(player);
+            angleLogger.putVerdict(player, verdict);
+            consumer.accept(verdict);
         }, duration * 20L);
     }
 
-    // Register a category. Map a unique id to it.
-    private void registerCategory(String name) {
-        categoryNameMap.put(name, categoryNameMap.size());
+    // Sink reporting players classified into any of the given categories to console and players with permission slr.notify
+    private ClassificationSink reportingSink(List<String> reportedCategories) {
+        return (player, features, result) -> {
+            String category = getCategoryNameFromID(result.getCategory());
+            if (!reportedCategories.contains(category))
+                return;
+
+            double likelihood = SLMaths.round(result.getLikelihood() * 100, 2, RoundingMode.HALF_UP);
+            String message = ChatColor.YELLOW + player.getName() + ChatColor.GREEN + " is classified as "
+                    + ChatColor.YELLOW + category + ChatColor.GREEN + " (likelihood: " + ChatColor.YELLOW + likelihood + "%" + ChatColor.GREEN + ")";
+            getLogger().info(ChatColor.stripColor(message));
+            getServer().broadcast(message, "slr.notify");
+        };
+    }
+
+    // Replace where results of the background scanner go. Does nothing if the scanner is disabled in config.yml
+    public void setClassificationSink(ClassificationSink sink) {
+        if (classificationScanner != null)
+            classificationScanner.setSink(sink);
     }
 
     // Convert category id from a predict result of the neural network to actual name of category
@@ -420,11 +875,6 @@ public class SnowLeopardReboot extends JavaPlugin {
         return null;
     }
 
-    // Clear category mappings, used when you need to reload all stored samples.
-    private void unregisterAllCategories() {
-        categoryNameMap.clear();
-    }
-
     // Validation methods useful for processing commands
     private static final class CommandValidate {
         // Validate if sender is not a instance of player and notify the sender upon failed validation
@@ -0,0 +1,234 @@
+package com.nova41.bukkitdev.slr.feature;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates statistics of the attacks of a player, one attack at a time, from which features are extracted
+ * by a {@link FeaturePipeline}.
+ *
+ * Every statistic is updated in O(1) by a single call to {@link #add(float, float, float, long)}, so all features
+ * are computed in one pass over the attacks, and the attacks themselves are never stored. Running mean and variance
+ * are maintained with Welford's algorithm; percentiles are approximated with a fixed histogram of angles.
+ * Variances are population variances, the same as {@link com.nova41.bukkitdev.slr.util.SLMaths#stddev(java.util.List)}.
+ */
+public final class FeatureAccumulator {
+
+    // Channels of a window of attacks, see FloatRingBuffer
+    public static final int CHANNEL_ANGLE = 0;
+    public static final int CHANNEL_YAW = 1;
+    public static final int CHANNEL_PITCH = 2;
+    public static final int CHANNELS = 3;
+
+    // Number of bins of the angle histogram, which spans [0, PI]
+    private static final int HISTOGRAM_BINS = 128;
+
+    // Number of attacks added
+    private int count;
+
+    // Running statistics of the angles, their delta and second delta (jerk)
+    private final RunningStatistics angle = new RunningStatistics();
+    private final RunningStatistics angleDelta = new RunningStatistics();
+    private final RunningStatistics angleJerk = new RunningStatistics();
+
+    // Running statistics of the absolute change in yaw and pitch between attacks (degrees)
+    private final RunningStatistics yawDelta = new RunningStatistics();
+    private final RunningStatistics pitchDelta = new RunningStatistics();
+
+    // Running statistics of the interval between attacks (milliseconds)
+    private final RunningStatistics interval = new RunningStatistics();
+
+    // Running co-moment of each angle and the angle before it, used for the lag-1 autocorrelation
+    private int lagCount;
+    private double lagPreviousMean;
+    private double lagCurrentMean;
+    private double lagPreviousM2;
+    private double lagCurrentM2;
+    private double lagC2;
+
+    // Number of angles falling in each bin of [0, PI]
+    private final int[] histogram = new int[HISTOGRAM_BINS];
+
+    // The last attack added, used to calculate deltas
+    private float lastAngle;
+    private double lastAngleDelta;
+    private float lastYaw;
+    private float lastPitch;
+    private long lastTimestamp;
+
+    /**
+     * Add an attack to the accumulator.
+     *
+     * @param angle angle between the player's cross-hair and the target (radians)
+     * @param yaw yaw of the player (degrees)
+     * @param pitch pitch of the player (degrees)
+     * @param timestamp when the attack happened (milliseconds)
+     */
+    public void add(float angle, float yaw, float pitch, long timestamp) {
+        count++;
+        this.angle.add(angle);
+
+        int bin = (int) (angle * (HISTOGRAM_BINS / Math.PI));
+        histogram[bin < 0 ? 0 : bin >= HISTOGRAM_BINS ? HISTOGRAM_BINS - 1 : bin]++;
+
+        if (count >= 2) {
+            double delta = (double) angle - lastAngle;
+            angleDelta.add(delta);
+            if (count >= 3)
+                angleJerk.add(delta - lastAngleDelta);
+            lastAngleDelta = delta;
+
+            // yaw wraps around every 360 degrees
+            double yawChange = (double) yaw - lastYaw;
+            yawDelta.add(Math.abs(yawChange - 360 * Math.rint(yawChange / 360)));
+            pitchDelta.add(Math.abs((double) pitch - lastPitch));
+            interval.add(timestamp - lastTimestamp);
+
+            lagCount++;
+            double previousDiff = lastAngle - lagPreviousMean;
+            lagPreviousMean += previousDiff / lagCount;
+            double currentDiff = angle - lagCurrentMean;
+            lagCurrentMean += currentDiff / lagCount;
+            lagPreviousM2 += previousDiff * (lastAngle - lagPreviousMean);
+            lagCurrentM2 += currentDiff * (angle - lagCurrentMean);
+            lagC2 += previousDiff * (angle - lagCurrentMean);
+        }
+
+        lastAngle = angle;
+        lastYaw = yaw;
+        lastPitch = pitch;
+        lastTimestamp = timestamp;
+    }
+
+    /**
+     * Get the number of attacks added since the last reset.
+     *
+     * @return the number of attacks added
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public double getAngleMean() {
+        return angle.mean;
+    }
+
+    public double getAngleVariance() {
+        return angle.variance();
+    }
+
+    public double getAngleDeltaMean() {
+        return angleDelta.mean;
+    }
+
+    public double getAngleDeltaVariance() {
+        return angleDelta.variance();
+    }
+
+    public double getAngleJerkMean() {
+        return angleJerk.mean;
+    }
+
+    public double getAngleJerkVariance() {
+        return angleJerk.variance();
+    }
+
+    public double getYawDeltaMean() {
+        return yawDelta.mean;
+    }
+
+    public double getYawDeltaVariance() {
+        return yawDelta.variance();
+    }
+
+    public double getPitchDeltaMean() {
+        return pitchDelta.mean;
+    }
+
+    public double getPitchDeltaVariance() {
+        return pitchDelta.variance();
+    }
+
+    public double getIntervalMean() {
+        return interval.mean;
+    }
+
+    public double getIntervalVariance() {
+        return interval.variance();
+    }
+
+    /**
+     * Get the correlation between each angle and the angle before it.
+     *
+     * @return the lag-1 autocorrelation of the angles in [-1, 1], 0 if the angles don't vary
+     */
+    public double getAngleAutocorrelation() {
+        double denominator = Math.sqrt(lagPreviousM2 * lagCurrentM2);
+        return denominator == 0 ? 0 : lagC2 / denominator;
+    }
+
+    /**
+     * Get an approximate percentile of the angles, interpolated within a bin of the angle histogram.
+     *
+     * @param percentile the percentile in [0, 1], e.g. 0.5 for the median
+     * @return the approximate percentile (radians), 0 if no attack has been added
+     */
+    public double getAnglePercentile(double percentile) {
+        double target = percentile * count;
+        int cumulative = 0;
+        for (int i = 0; i <= HISTOGRAM_BINS - 1; i++) {
+            if (histogram[i] > 0 && cumulative + histogram[i] >= target)
+                return (i + (target - cumulative) / histogram[i]) * (Math.PI / HISTOGRAM_BINS);
+            cumulative += histogram[i];
+        }
+        return 0;
+    }
+
+    /**
+     * Forget all attacks added so far.
+     */
+    public void reset() {
+        count = 0;
+        angle.reset();
+        angleDelta.reset();
+        angleJerk.reset();
+        yawDelta.reset();
+        pitchDelta.reset();
+        interval.reset();
+        lagCount = 0;
+        lagPreviousMean = 0;
+        lagCurrentMean = 0;
+        lagPreviousM2 = 0;
+        lagCurrentM2 = 0;
+        lagC2 = 0;
+        Arrays.fill(histogram, 0);
+        lastAngle = 0;
+        lastAngleDelta = 0;
+        lastYaw = 0;
+        lastPitch = 0;
+        lastTimestamp = 0;
+    }
+
+    // Running mean and variance of a stream of values (Welford's algorithm)
+    private static final class RunningStatistics {
+        private int count;
+        private double mean;
+        private double m2;
+
+        private void add(double value) {
+            count++;
+            double diff = value - mean;
+            mean += diff / count;
+            m2 += diff * (value - mean);
+        }
+
+        private double variance() {
+            return count == 0 ? 0 : m2 / count;
+        }
+
+        private void reset() {
+            count = 0;
+            mean = 0;
+            m2 = 0;
+        }
+    }
+}
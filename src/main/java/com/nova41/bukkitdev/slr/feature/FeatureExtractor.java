@@ -0,0 +1,17 @@
+package com.nova41.bukkitdev.slr.feature;
+
+/**
+ * Extracts a single feature from the statistics of a player's attacks.
+ */
+@FunctionalInterface
+public interface FeatureExtractor {
+
+    /**
+     * Extract the feature.
+     *
+     * @param accumulator statistics of 2 or more attacks
+     * @return the feature
+     */
+    double extract(FeatureAccumulator accumulator);
+
+}
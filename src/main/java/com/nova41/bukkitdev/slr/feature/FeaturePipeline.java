@@ -0,0 +1,142 @@
+package com.nova41.bukkitdev.slr.feature;
+
+import com.nova41.bukkitdev.slr.metrics.Metrics;
+import com.nova41.bukkitdev.slr.util.FloatRingBuffer;
+
+import java.util.*;
+
+/**
+ * An ordered list of feature extractors, turning attacks of a player into a vector.
+ *
+ * The statistics needed by every extractor are accumulated in a single pass over the attacks
+ * (see {@link FeatureAccumulator}), so enabling more features doesn't add passes over the data.
+ */
+public final class FeaturePipeline {
+
+    // Features extracted by older versions, and by default, in the same order as SLMaths.extractFeatures
+    public static final List<String> LEGACY_FEATURES = Collections.unmodifiableList(Arrays.asList(
+            "angle_variance", "angle_mean", "angle_delta_variance", "angle_delta_mean"));
+
+    // Extractors shipped with the plugin, by name
+    private static final Map<String, FeatureExtractor> BUILT_IN_EXTRACTORS;
+
+    static {
+        Map<String, FeatureExtractor> extractors = new LinkedHashMap<>();
+        extractors.put("angle_variance", FeatureAccumulator::getAngleVariance);
+        extractors.put("angle_mean", FeatureAccumulator::getAngleMean);
+        extractors.put("angle_delta_variance", FeatureAccumulator::getAngleDeltaVariance);
+        extractors.put("angle_delta_mean", FeatureAccumulator::getAngleDeltaMean);
+        extractors.put("angle_jerk_variance", FeatureAccumulator::getAngleJerkVariance);
+        extractors.put("angle_jerk_mean", FeatureAccumulator::getAngleJerkMean);
+        extractors.put("angle_median", accumulator -> accumulator.getAnglePercentile(0.5));
+        extractors.put("angle_p90", accumulator -> accumulator.getAnglePercentile(0.9));
+        extractors.put("angle_autocorrelation", FeatureAccumulator::getAngleAutocorrelation);
+        extractors.put("yaw_delta_variance", FeatureAccumulator::getYawDeltaVariance);
+        extractors.put("yaw_delta_mean", FeatureAccumulator::getYawDeltaMean);
+        extractors.put("pitch_delta_variance", FeatureAccumulator::getPitchDeltaVariance);
+        extractors.put("pitch_delta_mean", FeatureAccumulator::getPitchDeltaMean);
+        extractors.put("interval_variance", FeatureAccumulator::getIntervalVariance);
+        extractors.put("interval_mean", FeatureAccumulator::getIntervalMean);
+        BUILT_IN_EXTRACTORS = Collections.unmodifiableMap(extractors);
+    }
+
+    private final String[] names;
+    private final FeatureExtractor[] extractors;
+
+    /**
+     * Create a pipeline extracting the given features.
+     *
+     * @param names names of the features, in the order they appear in vectors
+     * @param availableExtractors extractors that can be used, by name, e.g. {@link #getBuiltInExtractors()}
+     * @throws IllegalArgumentException if no feature is given, or a feature is not available
+     */
+    public FeaturePipeline(List<String> names, Map<String, FeatureExtractor> availableExtractors) {
+        if (names.isEmpty())
+            throw new IllegalArgumentException("At least one feature is needed");
+
+        this.names = names.toArray(new String[0]);
+        this.extractors = new FeatureExtractor[names.size()];
+        for (int i = 0; i <= this.names.length - 1; i++) {
+            extractors[i] = availableExtractors.get(this.names[i]);
+            if (extractors[i] == null)
+                throw new IllegalArgumentException("Unknown feature '" + this.names[i] + "'");
+        }
+    }
+
+    /**
+     * Get the built-in extractors.
+     *
+     * @return the built-in extractors by name
+     */
+    public static Map<String, FeatureExtractor> getBuiltInExtractors() {
+        return BUILT_IN_EXTRACTORS;
+    }
+
+    /**
+     * Get the number of features, i.e. the dimension of extracted vectors.
+     *
+     * @return the number of features
+     */
+    public int getDimension() {
+        return names.length;
+    }
+
+    /**
+     * Get names of the features, in the order they appear in vectors.
+     *
+     * @return names of the features
+     */
+    public List<String> getNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * Extract features from accumulated attacks.
+     *
+     * @param accumulator statistics of the attacks
+     * @return the vector of features
+     * @throws IllegalStateException if less than 2 attacks are accumulated
+     */
+    public double[] extract(FeatureAccumulator accumulator) {
+        long startTime = System.nanoTime();
+        double[] vector = extractFrom(accumulator);
+        Metrics.FEATURE_EXTRACTION.recordSince(startTime);
+        return vector;
+    }
+
+    private double[] extractFrom(FeatureAccumulator accumulator) {
+        if (accumulator.getCount() <= 1)
+            throw new IllegalStateException("The accumulator must contain 2 or more attacks in order to extract features");
+
+        double[] vector = new double[extractors.length];
+        for (int i = 0; i <= extractors.length - 1; i++)
+            vector[i] = extractors[i].extract(accumulator);
+        return vector;
+    }
+
+    /**
+     * Extract features from a window of attacks, which has the channels described in {@link FeatureAccumulator}.
+     *
+     * @param window the window of attacks
+     * @return the vector of features
+     * @throws IllegalStateException if there are less than 2 attacks in the window
+     */
+    public double[] extract(FloatRingBuffer window) {
+        if (window.getChannels() != FeatureAccumulator.CHANNELS)
+            throw new IllegalArgumentException(String.format("Window has illegal channels (%d, excepted %d)",
+                    window.getChannels(), FeatureAccumulator.CHANNELS));
+
+        long startTime = System.nanoTime();
+        float[] angles = window.getArray(FeatureAccumulator.CHANNEL_ANGLE);
+        float[] yaws = window.getArray(FeatureAccumulator.CHANNEL_YAW);
+        float[] pitches = window.getArray(FeatureAccumulator.CHANNEL_PITCH);
+        long[] timestamps = window.getTimestampArray();
+
+        FeatureAccumulator accumulator = new FeatureAccumulator();
+        for (int i = window.getOffset(), end = window.getOffset() + window.size(); i <= end - 1; i++)
+            accumulator.add(angles[i], yaws[i], pitches[i], timestamps[i]);
+        double[] vector = extractFrom(accumulator);
+        Metrics.FEATURE_EXTRACTION.recordSince(startTime);
+        return vector;
+    }
+}
@@ -0,0 +1,130 @@
+package com.nova41.bukkitdev.slr.listener;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Class for sampling angle between player's cross-hair and its combat target whenever the player moves or turns,
+ * rather than only when the player attacks, so that more angles are logged in the same time.
+ *
+ * The combat target of a player is the entity he/she attacked last, until the player stops attacking for a while.
+ * Samples of a player are throttled to one per interval, and are recorded to the {@link PlayerAttackAngleLogger}
+ * the same way angles of attacks are. All events are handled on the main thread.
+ */
+public class PlayerAimSampler implements Listener {
+
+    private final PlayerAttackAngleLogger angleLogger;
+
+    // Minimum time between two samples of a player (milliseconds)
+    private final long interval;
+
+    // A player stops being sampled this long after his/her last attack (milliseconds)
+    private final long targetTimeout;
+
+    // Combat target of every player attacking
+    private final Map<UUID, AimTarget> targets = new HashMap<>();
+
+    /**
+     * Create a new sampler.
+     *
+     * @param angleLogger logger where samples are recorded
+     * @param interval minimum time between two samples of a player (milliseconds)
+     * @param targetTimeout a player stops being sampled this long after his/her last attack (milliseconds)
+     */
+    public PlayerAimSampler(PlayerAttackAngleLogger angleLogger, long interval, long targetTimeout) {
+        this.angleLogger = angleLogger;
+        this.interval = interval;
+        this.targetTimeout = targetTimeout;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onAttack(EntityDamageByEntityEvent event) {
+        if (!(event.getDamager() instanceof Player))
+            return;
+
+        Player player = (Player) event.getDamager();
+        AimTarget target = targets.computeIfAbsent(player.getUniqueId(), uuid -> new AimTarget());
+        target.entity = event.getEntity();
+        target.lastAttack = System.currentTimeMillis();
+        // the attack itself is logged by the angle logger
+        target.lastSample = target.lastAttack;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onMove(PlayerMoveEvent event) {
+        Player player = event.getPlayer();
+        AimTarget target = targets.get(player.getUniqueId());
+        if (target == null)
+            return;
+
+        long now = System.currentTimeMillis();
+        if (now - target.lastSample < interval)
+            return;
+        if (now - target.lastAttack > targetTimeout || !target.entity.isValid()) {
+            targets.remove(player.getUniqueId());
+            return;
+        }
+
+        Location to = event.getTo();
+        Location targetLocation = target.entity.getLocation(target.location);
+        if (to.getWorld() != targetLocation.getWorld())
+            return;
+
+        float angle = aimAngle(to, player.getEyeHeight(), targetLocation);
+        if (Float.isNaN(angle))
+            return;
+
+        target.lastSample = now;
+        angleLogger.record(player, angle, to.getYaw(), to.getPitch(), now);
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        targets.remove(event.getPlayer().getUniqueId());
+    }
+
+    // Angle (radians) between the look direction at a location and the direction from the eye to the target,
+    // the same as the angle calculated on attacks, computed without creating vectors
+    static float aimAngle(Location location, double eyeHeight, Location target) {
+        double yaw = Math.toRadians(location.getYaw());
+        double pitch = Math.toRadians(location.getPitch());
+        double cosPitch = Math.cos(pitch);
+        double lookX = -Math.sin(yaw) * cosPitch;
+        double lookY = -Math.sin(pitch);
+        double lookZ = Math.cos(yaw) * cosPitch;
+
+        double toTargetX = target.getX() - location.getX();
+        double toTargetY = target.getY() - (location.getY() + eyeHeight);
+        double toTargetZ = target.getZ() - location.getZ();
+        double length = Math.sqrt(toTargetX * toTargetX + toTargetY * toTargetY + toTargetZ * toTargetZ);
+        if (length == 0)
+            return Float.NaN;
+
+        // the look direction is a unit vector
+        double cos = (lookX * toTargetX + lookY * toTargetY + lookZ * toTargetZ) / length;
+        return (float) Math.acos(Math.max(-1, Math.min(1, cos)));
+    }
+
+    // Combat target of a player
+    private static final class AimTarget {
+        private Entity entity;
+
+        // Time (milliseconds) of the last attack and the last sample
+        private long lastAttack;
+        private long lastSample;
+
+        // Location of the target, reused every time it is read
+        private final Location location = new Location(null, 0, 0, 0);
+    }
+}
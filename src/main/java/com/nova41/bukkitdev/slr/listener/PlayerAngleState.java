@@ -0,0 +1,111 @@
+package com.nova41.bukkitdev.slr.listener;
+
+import com.nova41.bukkitdev.slr.feature.FeatureAccumulator;
+import com.nova41.bukkitdev.slr.model.Verdict;
+import com.nova41.bukkitdev.slr.util.FloatRingBuffer;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Attacks logged from a single player.
+ *
+ * The window of logged angles is written only by the main thread, but may be taken by any thread.
+ * The writer checks the window out (leaving null in its place) while adding an angle and puts it back afterwards,
+ * and a taker only swaps a window that is not checked out, so a taken window is never written again.
+ */
+final class PlayerAngleState {
+
+    // Whether angles produced by the player need to be logged
+    private volatile boolean registered;
+
+    // Whether the player produced angles since his/her features were last taken to be classified, and the last verdict
+    private volatile boolean dirty = true;
+    private volatile Verdict verdict;
+
+    // Logged attacks, with the channels described in FeatureAccumulator; null while an attack is being added to it
+    private final AtomicReference<FloatRingBuffer> window;
+
+    // The maximum number of angles kept, and how long (milliseconds) an angle is kept
+    private final int bufferSize;
+    private final long bufferWindow;
+
+    // Running features of the player, and an entry used to add an attack to the window; only accessed by the main thread
+    private final FeatureAccumulator runningFeatures = new FeatureAccumulator();
+    private final float[] entry = new float[FeatureAccumulator.CHANNELS];
+
+    PlayerAngleState(int bufferSize, long bufferWindow) {
+        this.bufferSize = bufferSize;
+        this.bufferWindow = bufferWindow;
+        this.window = new AtomicReference<>(new FloatRingBuffer(bufferSize, bufferWindow, FeatureAccumulator.CHANNELS));
+    }
+
+    boolean isRegistered() {
+        return registered;
+    }
+
+    void setRegistered(boolean registered) {
+        this.registered = registered;
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    // Mark the player dirty; the flag is only written when it changes, as this is called on every attack
+    void markDirty() {
+        if (!dirty)
+            dirty = true;
+    }
+
+    void markClean() {
+        dirty = false;
+    }
+
+    Verdict getVerdict() {
+        return verdict;
+    }
+
+    void setVerdict(Verdict verdict) {
+        this.verdict = verdict;
+    }
+
+    FeatureAccumulator getRunningFeatures() {
+        return runningFeatures;
+    }
+
+    // Add an attack to the window. Called only by the main thread
+    void log(float angle, float yaw, float pitch, long timestamp) {
+        entry[FeatureAccumulator.CHANNEL_ANGLE] = angle;
+        entry[FeatureAccumulator.CHANNEL_YAW] = yaw;
+        entry[FeatureAccumulator.CHANNEL_PITCH] = pitch;
+
+        FloatRingBuffer buffer = window.getAndSet(null);
+        buffer.add(entry, timestamp);
+        window.set(buffer);
+    }
+
+    // Get the number of attacks in the window, or 0 if an attack is being added to it
+    int getBufferedCount() {
+        FloatRingBuffer buffer = window.get();
+        return buffer == null ? 0 : buffer.size();
+    }
+
+    // Get the memory (bytes) taken by the values and timestamps of the window, each of which is stored twice
+    long getWindowBytes() {
+        return 2L * bufferSize * (FeatureAccumulator.CHANNELS * Float.BYTES + Long.BYTES);
+    }
+
+    // Replace the window with an empty one and return the angles in the replaced window that are not expired yet
+    FloatRingBuffer takeWindow(long now) {
+        FloatRingBuffer emptyBuffer = new FloatRingBuffer(bufferSize, bufferWindow, FeatureAccumulator.CHANNELS);
+        while (true) {
+            FloatRingBuffer buffer = window.get();
+            if (buffer != null && window.compareAndSet(buffer, emptyBuffer)) {
+                buffer.expire(now);
+                return buffer;
+            }
+            // an attack is being added by the main thread, which takes no longer than a few nanoseconds
+            Thread.yield();
+        }
+    }
+}
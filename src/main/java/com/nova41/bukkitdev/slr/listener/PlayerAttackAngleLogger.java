@@ -1,25 +1,52 @@
 package com.nova41.bukkitdev.slr.listener;
 
+import com.nova41.bukkitdev.slr.feature.FeaturePipeline;
+import com.nova41.bukkitdev.slr.metrics.Metrics;
+import com.nova41.bukkitdev.slr.model.Verdict;
+import com.nova41.bukkitdev.slr.util.FloatRingBuffer;
+import org.bukkit.Location;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.util.Vector;
 
-import java.util.*;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Class for logging angle between player's cross-hair and its target.
  *
- * We use string instead of Player object to identify players because we want to keep the record of a player if he/she re-logs.
+ * Players are identified by their UUIDs, which don't change when they re-log, so the record of a registered player
+ * is kept if he/she re-logs. Angles are logged on the main thread, while players can be registered and logged angles
+ * can be taken from any thread without locking.
  */
 public class PlayerAttackAngleLogger implements Listener {
-    // Lists all players whose loggedAngles need to be logged.
-    private Set<String> registeredPlayers = new HashSet<>();
+    // Pipeline extracting running features
+    private final FeaturePipeline featurePipeline;
 
-    // Stores all players attacking and angle sequence they produced
-    private Map<String, List<Float>> loggedAngles = new HashMap<>();
+    // State of every player attacking or registered
+    private final ConcurrentMap<UUID, PlayerAngleState> states = new ConcurrentHashMap<>();
+
+    // The maximum number of angles kept for each player, and how long (milliseconds) an angle is kept
+    private final int bufferSize;
+    private final long bufferWindow;
+
+    /**
+     * Create a new logger.
+     *
+     * @param featurePipeline pipeline extracting running features
+     * @param bufferSize the maximum number of angles kept for each player
+     * @param bufferWindow angles older than this (milliseconds) are dropped, 0 to keep angles until the buffer is full
+     */
+    public PlayerAttackAngleLogger(FeaturePipeline featurePipeline, int bufferSize, long bufferWindow) {
+        this.featurePipeline = featurePipeline;
+        this.bufferSize = bufferSize;
+        this.bufferWindow = bufferWindow;
+    }
 
     @EventHandler
     public void onAttack(EntityDamageByEntityEvent event) {
@@ -27,47 +54,168 @@ public class PlayerAttackAngleLogger implements Listener {
         if (!(event.getDamager() instanceof Player))
             return;
 
-        // Ignore if angle sequence from the player does not need to be logged
-        if (!registeredPlayers.contains(event.getDamager().getName()))
-            return;
+        long startTime = System.nanoTime();
 
         // Calculate angle. See 2.2 in https://www.spigotmc.org/threads/machine-learning-killaura-detection-in-minecraft.301609/
         Player player = (Player) event.getDamager();
         Entity entity = event.getEntity();
-        Vector playerLookDir = player.getEyeLocation().getDirection();
-        Vector playerEyeLoc = player.getEyeLocation().toVector();
+        Location eyeLocation = player.getEyeLocation();
+        Vector playerLookDir = eyeLocation.getDirection();
+        Vector playerEyeLoc = eyeLocation.toVector();
         Vector entityLoc = entity.getLocation().toVector();
         Vector playerEntityVec = entityLoc.subtract(playerEyeLoc);
         float angle = playerLookDir.angle(playerEntityVec);
 
+        record(player, angle, eyeLocation.getYaw(), eyeLocation.getPitch(), System.currentTimeMillis());
+        Metrics.ATTACK.recordSince(startTime);
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        // Forget players who quit, unless their angles are being logged
+        states.computeIfPresent(event.getPlayer().getUniqueId(), (uuid, state) -> state.isRegistered() ? state : null);
+    }
+
+    // Record an angle produced by a player, e.g. on an attack or by the PlayerAimSampler. Called only by the main thread
+    public void record(Player player, float angle, float yaw, float pitch, long timestamp) {
+        // Update running features of the player
+        Metrics.RECORDED_ANGLES.increment();
+        PlayerAngleState state = getState(player);
+        state.getRunningFeatures().add(angle, yaw, pitch, timestamp);
+        state.markDirty();
+
+        // Ignore if angle sequence from the player does not need to be logged
+        if (!state.isRegistered())
+            return;
+
         // Log the angle
-        if (!loggedAngles.containsKey(player.getName()))
-            loggedAngles.put(player.getName(), new ArrayList<>());
-        loggedAngles.get(player.getName()).add(angle);
+        state.log(angle, yaw, pitch, timestamp);
     }
 
     // Tell the logger that angle sequence produced by this player need to be logged
     public void registerPlayer(Player player) {
-        registeredPlayers.add(player.getName());
+        getState(player).setRegistered(true);
     }
 
     // Tell the logger to no longer log angle sequence produced by this player
+    // A player who quit while being logged was kept only for this, so he/she is forgotten now
     public void unregisterPlayer(Player player) {
-        registeredPlayers.remove(player.getName());
+        if (!player.isOnline()) {
+            states.remove(player.getUniqueId());
+            return;
+        }
+
+        PlayerAngleState state = states.get(player.getUniqueId());
+        if (state != null)
+            state.setRegistered(false);
     }
 
-    // Get all players whose loggedAngles need to be logged.
-    public Set<String> getRegisteredPlayers() {
-        return registeredPlayers;
+    // Check whether angle sequence produced by this player is being logged
+    public boolean isRegistered(Player player) {
+        PlayerAngleState state = states.get(player.getUniqueId());
+        return state != null && state.isRegistered();
     }
 
-    // Get logged angle sequence of a player
-    public List<Float> getLoggedAngles(Player player) {
-        return loggedAngles.get(player.getName());
+    // Take logged angle sequence of a player, leaving an empty one to log further angles,
+    // or return null if the player has not attacked anybody since the last take
+    // The sequence has the channels described in FeatureAccumulator
+    public FloatRingBuffer takeLoggedAngles(Player player) {
+        PlayerAngleState state = states.get(player.getUniqueId());
+        if (state == null)
+            return null;
+
+        FloatRingBuffer angles = state.takeWindow(System.currentTimeMillis());
+        return angles.size() == 0 ? null : angles;
     }
 
     // Clear logged angle sequence (if there's any) for a player
     public void clearLoggedAngles(Player player) {
-        loggedAngles.remove(player.getName());
+        takeLoggedAngles(player);
+    }
+
+    // Get running features of a player, or null if the player has not attacked enough since the last reset
+    public double[] getRunningFeatures(Player player) {
+        PlayerAngleState state = states.get(player.getUniqueId());
+        return state == null || state.getRunningFeatures().getCount() <= 1 ? null : featurePipeline.extract(state.getRunningFeatures());
+    }
+
+    // Get how many attacks are accumulated in running features of a player since the last reset
+    public int getRunningAttackCount(Player player) {
+        PlayerAngleState state = states.get(player.getUniqueId());
+        return state == null ? 0 : state.getRunningFeatures().getCount();
+    }
+
+    // Reset running features (if there's any) for a player
+    public void resetRunningFeatures(Player player) {
+        PlayerAngleState state = states.get(player.getUniqueId());
+        if (state != null)
+            state.getRunningFeatures().reset();
+    }
+
+    // Check whether a player has produced angles since his/her features were last taken to be classified
+    // A player who never attacked is not dirty, so idle players can be skipped without extracting anything
+    public boolean isDirty(Player player) {
+        PlayerAngleState state = states.get(player.getUniqueId());
+        return state != null && state.isDirty();
+    }
+
+    // Mark the features of a player as taken to be classified. The player becomes dirty again once he/she produces an angle
+    // The last verdict was made from older attacks, so it is forgotten until the verdict of the taken features is put
+    public void markClean(Player player) {
+        PlayerAngleState state = states.get(player.getUniqueId());
+        if (state != null) {
+            state.setVerdict(null);
+            state.markClean();
+        }
+    }
+
+    // Get the last verdict of a player, or null if the player has not been classified
+    public Verdict getVerdict(Player player) {
+        PlayerAngleState state = states.get(player.getUniqueId());
+        return state == null ? null : state.getVerdict();
+    }
+
+    // Get the last verdict of a player if he/she has produced no angles since it was made and it is no older than maxAge
+    // (milliseconds), otherwise null
+    public Verdict getFreshVerdict(Player player, long now, long maxAge) {
+        PlayerAngleState state = states.get(player.getUniqueId());
+        Verdict verdict = state == null || state.isDirty() ? null : state.getVerdict();
+        return verdict == null || now - verdict.getTimestamp() > maxAge ? null : verdict;
+    }
+
+    // Remember the verdict of a player, unless the player has quit
+    public void putVerdict(Player player, Verdict verdict) {
+        PlayerAngleState state = states.get(player.getUniqueId());
+        if (state != null)
+            state.setVerdict(verdict);
+    }
+
+    // Forget verdicts of all players, e.g. when the classifier is replaced
+    public void clearVerdicts() {
+        states.values().forEach(state -> state.setVerdict(null));
+    }
+
+    // Get the number of players whose angles are kept by the logger
+    public int getTrackedPlayerCount() {
+        return states.size();
+    }
+
+    // Get the number of angles buffered for all players. Windows are read without locking, so the number is approximate
+    public long getBufferedAngleCount() {
+        return states.values().stream().mapToLong(PlayerAngleState::getBufferedCount).sum();
+    }
+
+    // Get the largest number of angles buffered for a single player
+    public int getMaxBufferedAngleCount() {
+        return states.values().stream().mapToInt(PlayerAngleState::getBufferedCount).max().orElse(0);
+    }
+
+    // Get the memory (bytes) taken by the windows of all players, which are allocated in full when created
+    public long getBufferedBytes() {
+        return states.values().stream().mapToLong(PlayerAngleState::getWindowBytes).sum();
+    }
+
+    private PlayerAngleState getState(Player player) {
+        return states.computeIfAbsent(player.getUniqueId(), uuid -> new PlayerAngleState(bufferSize, bufferWindow));
     }
 }
@@ -0,0 +1,31 @@
+package com.nova41.bukkitdev.slr.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * A value sampled whenever metrics are read, e.g. the number of angles buffered for players.
+ */
+public final class Gauge {
+
+    private final String name;
+    private final String help;
+    private final DoubleSupplier supplier;
+
+    Gauge(String name, String help, DoubleSupplier supplier) {
+        this.name = name;
+        this.help = help;
+        this.supplier = supplier;
+    }
+
+    public double get() {
+        return supplier.getAsDouble();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+}
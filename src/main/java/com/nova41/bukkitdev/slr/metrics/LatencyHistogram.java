@@ -0,0 +1,115 @@
+package com.nova41.bukkitdev.slr.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies with fixed buckets, cheap enough to be recorded on hot paths from any thread.
+ *
+ * Bucket i counts latencies up to 2^(i + 8) nanoseconds, i.e. from 256 ns to about 1 s, and the last bucket counts
+ * anything slower. Counts are kept in LongAdders, so recording never takes a lock, and percentiles are estimated as
+ * the upper bound of the bucket they fall in.
+ */
+public final class LatencyHistogram {
+
+    // Upper bound of the first bucket is 2^FIRST_BUCKET_SHIFT nanoseconds
+    private static final int FIRST_BUCKET_SHIFT = 8;
+    private static final int BUCKET_COUNT = 24;
+
+    private final String name;
+    private final String help;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram(String name, String help) {
+        this.name = name;
+        this.help = help;
+        for (int i = 0; i <= BUCKET_COUNT - 1; i++)
+            buckets[i] = new LongAdder();
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos the latency in nanoseconds
+     */
+    public void record(long nanos) {
+        // the smallest i such that nanos <= 2^(i + 8)
+        int bucket = nanos <= 1L << FIRST_BUCKET_SHIFT ? 0
+                : Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(nanos - 1) - FIRST_BUCKET_SHIFT);
+        buckets[bucket].increment();
+        count.increment();
+        sum.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    /**
+     * Record the time elapsed since the given time.
+     *
+     * @param startNanos the start time, from {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Estimate a percentile of the recorded latencies.
+     *
+     * @param quantile the quantile, e.g. 0.99 for the 99th percentile
+     * @return the upper bound (nanoseconds) of the bucket the percentile falls in, but no more than the maximum,
+     *         or 0 if nothing has been recorded
+     */
+    public long getPercentile(double quantile) {
+        long total = count.sum();
+        if (total == 0)
+            return 0;
+
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i <= BUCKET_COUNT - 2; i++) {
+            seen += buckets[i].sum();
+            if (seen >= rank)
+                return Math.min(getBucketUpperBound(i), getMax());
+        }
+        return getMax();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    // Sum of the recorded latencies (nanoseconds)
+    public long getSum() {
+        return sum.sum();
+    }
+
+    // The maximum recorded latency (nanoseconds)
+    public long getMax() {
+        return max.get();
+    }
+
+    public int getBucketCount() {
+        return BUCKET_COUNT;
+    }
+
+    // Upper bound (nanoseconds) of a bucket, or Long.MAX_VALUE for the last one
+    public long getBucketUpperBound(int bucket) {
+        return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << (bucket + FIRST_BUCKET_SHIFT);
+    }
+
+    // Number of latencies recorded in a bucket
+    public long getBucketValue(int bucket) {
+        return buckets[bucket].sum();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+}
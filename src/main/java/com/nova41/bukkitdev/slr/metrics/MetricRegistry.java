@@ -0,0 +1,127 @@
+package com.nova41.bukkitdev.slr.metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A set of named metrics, which can be written in the Prometheus text exposition format.
+ */
+public final class MetricRegistry {
+
+    // Metrics by name, in the order they were registered
+    private final Map<String, Counter> counters = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, LatencyHistogram> histograms = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Register a counter, or get the one already registered with the name.
+     *
+     * @param name name of the counter, which should end with _total
+     * @param help description of the counter
+     * @return the counter
+     */
+    public Counter counter(String name, String help) {
+        return counters.computeIfAbsent(name, key -> new Counter(name, help));
+    }
+
+    /**
+     * Register a latency histogram, or get the one already registered with the name.
+     *
+     * @param name name of the histogram, which should end with _seconds
+     * @param help description of the histogram
+     * @return the histogram
+     */
+    public LatencyHistogram histogram(String name, String help) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram(name, help));
+    }
+
+    /**
+     * Register a gauge, replacing the one already registered with the name, e.g. by the plugin before it was reloaded.
+     *
+     * @param name name of the gauge
+     * @param help description of the gauge
+     * @param supplier supplier of the value, called whenever metrics are read
+     */
+    public void gauge(String name, String help, DoubleSupplier supplier) {
+        gauges.put(name, new Gauge(name, help, supplier));
+    }
+
+    public List<Counter> getCounters() {
+        synchronized (counters) {
+            return new ArrayList<>(counters.values());
+        }
+    }
+
+    public List<LatencyHistogram> getHistograms() {
+        synchronized (histograms) {
+            return new ArrayList<>(histograms.values());
+        }
+    }
+
+    // Gauges sorted by name
+    public List<Gauge> getGauges() {
+        List<Gauge> sortedGauges = new ArrayList<>(gauges.values());
+        sortedGauges.sort(Comparator.comparing(Gauge::getName));
+        return sortedGauges;
+    }
+
+    /**
+     * Write every metric in the Prometheus text exposition format. Latencies are written in seconds.
+     *
+     * @param out where the metrics are written
+     * @throws IOException if an I/O error occurs
+     */
+    public void writePrometheus(Writer out) throws IOException {
+        for (Counter counter : getCounters()) {
+            writeHeader(out, counter.getName(), counter.getHelp(), "counter");
+            out.write(counter.getName() + " " + counter.get() + "\n");
+        }
+
+        for (LatencyHistogram histogram : getHistograms()) {
+            writeHeader(out, histogram.getName(), histogram.getHelp(), "histogram");
+            // buckets of the exposition format are cumulative
+            long cumulative = 0;
+            for (int i = 0; i <= histogram.getBucketCount() - 1; i++) {
+                cumulative += histogram.getBucketValue(i);
+                long upperBound = histogram.getBucketUpperBound(i);
+                String le = upperBound == Long.MAX_VALUE ? "+Inf" : Double.toString(upperBound / 1e9);
+                out.write(histogram.getName() + "_bucket{le=\"" + le + "\"} " + cumulative + "\n");
+            }
+            out.write(histogram.getName() + "_sum " + histogram.getSum() / 1e9 + "\n");
+            out.write(histogram.getName() + "_count " + cumulative + "\n");
+        }
+
+        for (Gauge gauge : getGauges()) {
+            writeHeader(out, gauge.getName(), gauge.getHelp(), "gauge");
+            out.write(gauge.getName() + " " + gauge.get() + "\n");
+        }
+    }
+
+    /**
+     * Write every metric to a file in the Prometheus text exposition format. The file is replaced atomically,
+     * so a scraper never reads it half-written.
+     *
+     * @param file where the metrics are written
+     * @throws IOException if an I/O error occurs
+     */
+    public void writePrometheus(Path file) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            writePrometheus(out);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeHeader(Writer out, String name, String help, String type) throws IOException {
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write("# TYPE " + name + " " + type + "\n");
+    }
+}
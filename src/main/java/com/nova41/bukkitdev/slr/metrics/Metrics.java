@@ -0,0 +1,29 @@
+package com.nova41.bukkitdev.slr.metrics;
+
+/**
+ * Metrics of the hot paths of the plugin, shared by everything recording them.
+ */
+public final class Metrics {
+
+    public static final MetricRegistry REGISTRY = new MetricRegistry();
+
+    public static final Counter RECORDED_ANGLES = REGISTRY.counter("slr_recorded_angles_total",
+            "Angles recorded from attacks and aim samples");
+    public static final Counter CLASSIFIED_VECTORS = REGISTRY.counter("slr_classified_vectors_total",
+            "Vectors classified, one by one or in batches");
+
+    public static final LatencyHistogram ATTACK = REGISTRY.histogram("slr_attack_seconds",
+            "Time spent handling an attack by the angle logger");
+    public static final LatencyHistogram FEATURE_EXTRACTION = REGISTRY.histogram("slr_feature_extraction_seconds",
+            "Time spent extracting features from attacks");
+    public static final LatencyHistogram PREDICT = REGISTRY.histogram("slr_predict_seconds",
+            "Time spent classifying a single vector");
+    public static final LatencyHistogram BATCH_PREDICT = REGISTRY.histogram("slr_batch_predict_seconds",
+            "Time spent classifying a batch of vectors");
+    public static final LatencyHistogram TRAIN_EPOCH = REGISTRY.histogram("slr_train_epoch_seconds",
+            "Time spent training the network for an epoch");
+    public static final LatencyHistogram DATASET_LOAD = REGISTRY.histogram("slr_dataset_load_seconds",
+            "Time spent reading the dataset into the network");
+
+    private Metrics() {}
+}
@@ -0,0 +1,33 @@
+package com.nova41.bukkitdev.slr.model;
+
+/**
+ * Something classifying vectors into categories, e.g. a LVQ neural network.
+ *
+ * Implementations can be used from any thread.
+ */
+public interface Classifier {
+
+    /**
+     * Classify a vector.
+     *
+     * @param vector the vector to be classified, which is not modified
+     * @return the classification result
+     * @throws IllegalStateException if the classifier is not ready to classify vectors yet
+     */
+    LVQNeuralNetworkPredictResult predict(double[] vector);
+
+    /**
+     * Classify many vectors at once. The i-th vector is stored in matrix[i * dimension, (i + 1) * dimension).
+     * The matrix is normalized in place, and the results are written to the output arrays.
+     *
+     * @param matrix vectors stored one after another, normalized in place
+     * @param count number of vectors in the matrix
+     * @param bestCategories receives the best matched category of each vector
+     * @param bestDistances receives the distance between each vector and its best match
+     * @param secondDistances receives the distance between each vector and the nearest match of another category
+     * @param parallel whether to classify the vectors on multiple threads
+     * @throws IllegalStateException if the classifier is not ready to classify vectors yet
+     */
+    void predict(double[] matrix, int count, int[] bestCategories, double[] bestDistances, double[] secondDistances,
+                 boolean parallel);
+}
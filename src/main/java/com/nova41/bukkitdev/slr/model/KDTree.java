@@ -0,0 +1,180 @@
+package com.nova41.bukkitdev.slr.model;
+
+import com.nova41.bukkitdev.slr.util.SLMaths;
+
+import java.util.stream.IntStream;
+
+/**
+ * A KD-tree over a fixed set of vectors, so that only the vectors near a given vector are visited to find the
+ * nearest ones. A tree never changes once built, so any number of threads can search it without locking.
+ */
+final class KDTree {
+
+    // Ranges of the tree with no more vectors than this are leaves, whose vectors are compared one by one
+    private static final int LEAF_SIZE = 8;
+
+    // the number of dimensions of the vectors
+    private final int dimension;
+
+    // vectors stored one after another in tree order, i.e. row-major [vector][dimension],
+    // and the index each vector had in the vectors the tree is built from
+    private final double[] vectors;
+    private final int[] indices;
+
+    // The tree is implicit: the node covering a range of vectors is the vector in the middle of the range, and the
+    // vectors before and after it form its children. Each node stores the dimension its range is split along
+    private final int[] splitDimensions;
+
+    /**
+     * Build a tree over vectors stored one after another. The vectors are copied, so they can be modified afterwards.
+     *
+     * @param dimension the number of dimensions of the vectors
+     * @param vectors vectors stored one after another
+     */
+    KDTree(int dimension, double[] vectors) {
+        this.dimension = dimension;
+
+        int count = vectors.length / dimension;
+        indices = IntStream.range(0, count).toArray();
+        splitDimensions = new int[count];
+        buildNode(vectors, 0, count);
+
+        // store vectors in tree order, so that vectors near each other in the tree are near each other in memory
+        this.vectors = new double[count * dimension];
+        for (int i = 0; i <= count - 1; i++)
+            System.arraycopy(vectors, indices[i] * dimension, this.vectors, i * dimension, dimension);
+    }
+
+    // Arrange a range of indices so that it forms a subtree, splitting it along the dimension in which its vectors spread most
+    private void buildNode(double[] vectors, int from, int to) {
+        if (to - from <= LEAF_SIZE)
+            return;
+
+        int split = 0;
+        double widestSpread = -1;
+        for (int row = 0; row <= dimension - 1; row++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = from; i <= to - 1; i++) {
+                double value = vectors[indices[i] * dimension + row];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (max - min > widestSpread) {
+                widestSpread = max - min;
+                split = row;
+            }
+        }
+
+        int middle = (from + to) >>> 1;
+        select(vectors, from, to - 1, middle, split);
+        splitDimensions[middle] = split;
+        buildNode(vectors, from, middle);
+        buildNode(vectors, middle + 1, to);
+    }
+
+    // Partially sort indices[left, right] by the given row of the vectors, so that the nth vector is in place,
+    // no vector before it is greater and no vector after it is less (quickselect)
+    private void select(double[] vectors, int left, int right, int nth, int row) {
+        while (left < right) {
+            double pivot = vectors[indices[(left + right) >>> 1] * dimension + row];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (vectors[indices[i] * dimension + row] < pivot)
+                    i++;
+                while (vectors[indices[j] * dimension + row] > pivot)
+                    j--;
+                if (i <= j) {
+                    int swap = indices[i];
+                    indices[i++] = indices[j];
+                    indices[j--] = swap;
+                }
+            }
+
+            if (nth <= j)
+                right = j;
+            else if (nth >= i)
+                left = i;
+            else
+                return;
+        }
+    }
+
+    /**
+     * Offer the vectors near a vector to a visitor. A vector is left out only if it is certainly not nearer than
+     * the bound of the visitor, and a distance may be abandoned once it reaches the bound.
+     *
+     * @param vector array holding the vector
+     * @param offset where the vector starts in the array
+     * @param visitor receives the vectors
+     */
+    void search(double[] vector, int offset, Visitor visitor) {
+        search(vector, offset, 0, indices.length, visitor);
+    }
+
+    // Offer the vectors in a subtree, skipping the child farther from the vector
+    // unless its side of the split can still hold a vector nearer than the bound
+    private void search(double[] vector, int offset, int from, int to, Visitor visitor) {
+        if (to - from <= LEAF_SIZE) {
+            for (int i = from; i <= to - 1; i++)
+                visitor.offer(i, SLMaths.squaredEuclideanDistance(vector, offset, vectors, i * dimension, dimension, visitor.bound()));
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        int split = splitDimensions[middle];
+        double diff = vector[offset + split] - vectors[middle * dimension + split];
+        visitor.offer(middle, SLMaths.squaredEuclideanDistance(vector, offset, vectors, middle * dimension, dimension, visitor.bound()));
+
+        if (diff < 0) {
+            search(vector, offset, from, middle, visitor);
+            if (diff * diff < visitor.bound())
+                search(vector, offset, middle + 1, to, visitor);
+        } else {
+            search(vector, offset, middle + 1, to, visitor);
+            if (diff * diff < visitor.bound())
+                search(vector, offset, from, middle, visitor);
+        }
+    }
+
+    /**
+     * Get the index a vector had in the vectors the tree is built from.
+     *
+     * @param position position of the vector in tree order
+     * @return the index of the vector in the vectors the tree is built from
+     */
+    int getIndex(int position) {
+        return indices[position];
+    }
+
+    /**
+     * Get the number of vectors in the tree.
+     *
+     * @return the number of vectors in the tree
+     */
+    int size() {
+        return indices.length;
+    }
+
+    /**
+     * Receives the vectors visited by a search.
+     */
+    interface Visitor {
+
+        /**
+         * Get the squared distance a vector must be within to matter to the visitor.
+         *
+         * @return the squared distance a vector must be within
+         */
+        double bound();
+
+        /**
+         * Offer a vector to the visitor.
+         *
+         * @param position position of the vector in tree order
+         * @param distance squared distance to the vector, or any value not less than the bound if it was abandoned
+         */
+        void offer(int position, double distance);
+    }
+}
@@ -0,0 +1,223 @@
+package com.nova41.bukkitdev.slr.model;
+
+import com.nova41.bukkitdev.slr.metrics.Metrics;
+
+import java.util.stream.IntStream;
+
+/**
+ * A k-nearest-neighbour classifier over every vector in the dataset of a LVQ neural network.
+ *
+ * A vector is classified into the category most of its k nearest vectors in the dataset have. Vectors are scaled the
+ * same way as the network does, and indexed by a KD-tree built once, so only the parts of the dataset near a vector
+ * are visited to find its neighbours. A classifier never changes once built, so any number of threads can classify
+ * vectors with it without locking.
+ */
+public final class KNearestNeighbourClassifier implements Classifier {
+
+    // the number of dimensions expected from input vectors, and how many neighbours vote
+    private final int dimension;
+    private final int k;
+
+    // tree over the scaled vectors, and the category of each vector in tree order
+    private final KDTree tree;
+    private final int[] vectorCategories;
+
+    // scaling of each row, a value is normalized to (value - offset) * scale
+    private final double[] offsetOfRow;
+    private final double[] scaleOfRow;
+
+    private KNearestNeighbourClassifier(int dimension, int k, double[] vectors, int[] vectorCategories,
+                                        double[] offsetOfRow, double[] scaleOfRow) {
+        this.dimension = dimension;
+        this.k = k;
+        this.offsetOfRow = offsetOfRow;
+        this.scaleOfRow = scaleOfRow;
+
+        tree = new KDTree(dimension, vectors);
+        this.vectorCategories = new int[vectorCategories.length];
+        for (int i = 0; i <= vectorCategories.length - 1; i++)
+            this.vectorCategories[i] = vectorCategories[tree.getIndex(i)];
+    }
+
+    /**
+     * Build a classifier over the dataset of a network, scaled the way the network currently scales vectors.
+     * The network is not modified, and it must not be trained while the classifier is being built.
+     *
+     * @param network the network holding the dataset
+     * @param k how many nearest vectors vote for the category of a vector
+     * @return the classifier
+     */
+    public static KNearestNeighbourClassifier build(LVQNeuralNetwork network, int k) {
+        if (k <= 0)
+            throw new IllegalArgumentException("At least one neighbour is needed to vote");
+
+        int dimension = network.getDimension();
+        int count = network.getVectorCount();
+        double[] vectors = new double[count * dimension];
+        int[] vectorCategories = new int[count];
+        for (int i = 0; i <= count - 1; i++) {
+            network.scaleVector(i, vectors, i * dimension);
+            vectorCategories[i] = network.getVectorCategory(i);
+        }
+
+        double[] offsetOfRow = new double[dimension];
+        double[] scaleOfRow = new double[dimension];
+        network.getScaling(offsetOfRow, scaleOfRow);
+        return new KNearestNeighbourClassifier(dimension, k, vectors, vectorCategories, offsetOfRow, scaleOfRow);
+    }
+
+    @Override
+    public LVQNeuralNetworkPredictResult predict(double[] vector) {
+        if (vector.length != dimension)
+            throw new IllegalArgumentException(String.format("Input has illegal dimensions (%d, excepted %d)", vector.length, dimension));
+
+        long startTime = System.nanoTime();
+        int[] bestCategory = new int[1];
+        double[] bestDistance = new double[1];
+        double[] secondDistance = new double[1];
+        predictRow(vector.clone(), 0, bestCategory, bestDistance, secondDistance);
+        Metrics.PREDICT.recordSince(startTime);
+        Metrics.CLASSIFIED_VECTORS.increment();
+        return new LVQNeuralNetworkPredictResult(bestCategory[0], bestDistance[0], secondDistance[0]);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The best distance of a vector is the distance to its nearest neighbour of the best matched category, and the
+     * second distance is the distance to its nearest neighbour of another category among the k nearest ones,
+     * or {@link Double#POSITIVE_INFINITY} if all of them have the best matched category. If a neighbour of another
+     * category is nearer than those of the best matched category, which won the vote nonetheless, the second distance
+     * is the best distance, so the likelihood never exceeds 1.
+     */
+    @Override
+    public void predict(double[] matrix, int count, int[] bestCategories, double[] bestDistances, double[] secondDistances,
+                        boolean parallel) {
+        if (matrix.length < count * dimension)
+            throw new IllegalArgumentException(String.format("Matrix is too small (%d, excepted %d)", matrix.length, count * dimension));
+
+        long startTime = System.nanoTime();
+        if (parallel)
+            IntStream.range(0, count).parallel().forEach(row -> predictRow(matrix, row, bestCategories, bestDistances, secondDistances));
+        else
+            for (int row = 0; row <= count - 1; row++)
+                predictRow(matrix, row, bestCategories, bestDistances, secondDistances);
+        Metrics.BATCH_PREDICT.recordSince(startTime);
+        Metrics.CLASSIFIED_VECTORS.add(count);
+    }
+
+    // Normalize a row in the matrix, find its nearest neighbours and let them vote
+    private void predictRow(double[] matrix, int row, int[] bestCategories, double[] bestDistances, double[] secondDistances) {
+        if (vectorCategories.length == 0)
+            throw new IllegalStateException("There are no vectors to compare with");
+
+        int offset = row * dimension;
+        for (int i = 0; i <= dimension - 1; i++)
+            matrix[offset + i] = (matrix[offset + i] - offsetOfRow[i]) * scaleOfRow[i];
+
+        Neighbours neighbours = new Neighbours(k);
+        tree.search(matrix, offset, neighbours);
+
+        // neighbours are sorted nearest first, so a tie goes to the category whose nearest neighbour is nearer
+        int bestCategory = -1;
+        int bestVotes = 0;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i <= neighbours.size - 1; i++) {
+            // votes of a category are counted at its nearest neighbour
+            int category = vectorCategories[neighbours.indices[i]];
+            if (neighbours.indexOf(vectorCategories, category) < i)
+                continue;
+
+            int votes = 0;
+            for (int j = i; j <= neighbours.size - 1; j++)
+                if (vectorCategories[neighbours.indices[j]] == category)
+                    votes++;
+            if (votes > bestVotes) {
+                bestCategory = category;
+                bestVotes = votes;
+                bestDistance = neighbours.distances[i];
+            }
+        }
+
+        double secondDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i <= neighbours.size - 1; i++)
+            if (vectorCategories[neighbours.indices[i]] != bestCategory) {
+                secondDistance = neighbours.distances[i];
+                break;
+            }
+        // the category winning the vote may not have the nearest neighbour, which makes the result as unlikely as a tie
+        secondDistance = Math.max(secondDistance, bestDistance);
+
+        bestCategories[row] = bestCategory;
+        bestDistances[row] = Math.sqrt(bestDistance);
+        secondDistances[row] = Math.sqrt(secondDistance);
+    }
+
+    // The nearest vectors found so far, sorted nearest first, and their squared distances
+    private static final class Neighbours implements KDTree.Visitor {
+        private final int[] indices;
+        private final double[] distances;
+        private int size = 0;
+
+        private Neighbours(int k) {
+            this.indices = new int[k];
+            this.distances = new double[k];
+        }
+
+        // Squared distance a vector must be within to be a neighbour
+        @Override
+        public double bound() {
+            return size < indices.length ? Double.POSITIVE_INFINITY : distances[size - 1];
+        }
+
+        // Position of the nearest neighbour of a category, or size if there's none
+        private int indexOf(int[] vectorCategories, int category) {
+            for (int i = 0; i <= size - 1; i++)
+                if (vectorCategories[indices[i]] == category)
+                    return i;
+            return size;
+        }
+
+        @Override
+        public void offer(int index, double distance) {
+            if (distance >= bound())
+                return;
+
+            // insert the vector in order, dropping the farthest neighbour if there are already k of them
+            int i = size < indices.length ? size++ : size - 1;
+            for (; i >= 1 && distances[i - 1] > distance; i--) {
+                indices[i] = indices[i - 1];
+                distances[i] = distances[i - 1];
+            }
+            indices[i] = index;
+            distances[i] = distance;
+        }
+    }
+
+    /**
+     * Get the number of dimensions expected from input vectors.
+     *
+     * @return the number of dimensions expected from input vectors
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Get how many nearest vectors vote for the category of a vector.
+     *
+     * @return how many nearest vectors vote
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Get the number of vectors the classifier compares with.
+     *
+     * @return the number of vectors in the dataset
+     */
+    public int getVectorCount() {
+        return vectorCategories.length;
+    }
+}
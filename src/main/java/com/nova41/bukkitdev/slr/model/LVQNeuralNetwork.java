@@ -1,14 +1,13 @@
 package com.nova41.bukkitdev.slr.model;
 
+import com.nova41.bukkitdev.slr.metrics.Metrics;
 import com.nova41.bukkitdev.slr.util.SLMaths;
 import org.apache.commons.lang.StringUtils;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.TreeMap;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 /**
  * A java implementation of learning-vector-quantization neural network
@@ -21,27 +20,53 @@ import java.util.stream.Collectors;
  * @version 2.0
  *
  */
-public class LVQNeuralNetwork {
+public class LVQNeuralNetwork implements Classifier {
 
     // learning factors
     private double step_size;         // initial step size, recommended: 0.5
     private double step_dec_rate;    // step decrease rate, recommended: 0.99
     private double min_step_size;    // minimum step size, recommended: 0.10
 
-    // times the network has been trained
+    // how many class centers (prototypes) each category has at most
+    private int prototypes_per_category;
+
+    // times the network has been trained, why it stopped training and statistics about the last epoch
     private int epoch = 0;
+    private LVQNeuralNetworkStopReason stopReason = LVQNeuralNetworkStopReason.UNTRAINED;
+    private LVQNeuralNetworkEpochStats lastEpoch;
 
     // the number of dimensions expected from input vectors
     private int dimension;
 
-    // Stores all labeled vector
-    private List<LabeledData> vectors = new ArrayList<>();
+    // Stores all labeled vectors one after another, i.e. row-major [vector][dimension], and the category of each vector
+    private double[] vectors;
+    private int[] vectorCategories;
+    private int vectorCount = 0;
+
+    // The center vector of categories (also called the output layer), stored the same way as vectors
+    private double[] classCenters = new double[0];
+    private int[] classCenterCategories = new int[0];
+
+    // Class centers at the beginning of the current epoch, used to measure how far they move, and when the epoch started
+    private double[] previousClassCenters = new double[0];
+    private long epochStartTime;
+
+    // How features are scaled, and the running min, max, mean and sum of squared deviations of each row in dataset.
+    // The statistics are updated as vectors are added, so the dataset never needs to be scanned to scale it
+    private LVQNeuralNetworkScalingMode scalingMode = LVQNeuralNetworkScalingMode.MIN_MAX;
+    private double[] minOfRow;
+    private double[] maxOfRow;
+    private double[] meanOfRow;
+    private double[] m2OfRow;
 
-    // The center vector of categories (lso called the output layer)
-    private List<LabeledData> classCenters = new ArrayList<>();
+    // Vectors are stored as added, and a row is scaled on the fly to (value - offsetOfRow) * scaleOfRow.
+    // Scaling is the identity until normalize() is called
+    private double[] offsetOfRow;
+    private double[] scaleOfRow;
 
-    // Min and max value in each row in dataset
-    private double[][] minMaxOfRow;
+    // The latest trained output layer. Only the training thread touches the fields above;
+    // other threads classify vectors with this immutable snapshot
+    private volatile LVQNeuralNetworkSnapshot snapshot;
 
     /**
      * Create a new LVQ neural network with given learning parameters.
@@ -52,71 +77,460 @@ public class LVQNeuralNetwork {
      * @param min_step_size minimum step size, the step size ceases to decrease if it is lower than this value
      */
     public LVQNeuralNetwork(int dimension, double step_size, double step_dec_rate, double min_step_size) {
+        this(dimension, step_size, step_dec_rate, min_step_size, 1);
+    }
+
+    /**
+     * Create a new LVQ neural network with given learning parameters and multiple class centers per category.
+     *
+     * @param dimension the number of dimensions expected from input vectors
+     * @param step_size initial step size
+     * @param step_dec_rate step decrease rate, the step size will *= step_dec_rate after each epoch
+     * @param min_step_size minimum step size, the step size ceases to decrease if it is lower than this value
+     * @param prototypes_per_category how many class centers each category has at most, more of them fit
+     *                                categories with several clusters of vectors better
+     */
+    public LVQNeuralNetwork(int dimension, double step_size, double step_dec_rate, double min_step_size, int prototypes_per_category) {
+        if (prototypes_per_category <= 0)
+            throw new IllegalArgumentException("A category needs at least one prototype");
+
         this.dimension = dimension;
         this.step_size = step_size;
         this.step_dec_rate = step_dec_rate;
         this.min_step_size = min_step_size;
+        this.prototypes_per_category = prototypes_per_category;
+        this.vectors = new double[16 * dimension];
+        this.vectorCategories = new int[16];
+
+        this.minOfRow = new double[dimension];
+        this.maxOfRow = new double[dimension];
+        this.meanOfRow = new double[dimension];
+        this.m2OfRow = new double[dimension];
+        Arrays.fill(minOfRow, Double.POSITIVE_INFINITY);
+        Arrays.fill(maxOfRow, Double.NEGATIVE_INFINITY);
+
+        this.offsetOfRow = new double[dimension];
+        this.scaleOfRow = new double[dimension];
+        Arrays.fill(scaleOfRow, 1);
     }
 
-    // Add a new labeled vector to the network
+    // Set how features are scaled. Takes effect from the next call to normalize()
+    public void setScalingMode(LVQNeuralNetworkScalingMode scalingMode) {
+        this.scalingMode = scalingMode;
+    }
+
+    public LVQNeuralNetworkScalingMode getScalingMode() {
+        return scalingMode;
+    }
+
+    // Add a new labeled vector to the network. Values of the vector are copied into the dataset
     public void addData(LabeledData vector) {
         if (vector.getData().length != dimension)
             throw new IllegalArgumentException(String.format("Input has illegal dimensions (%d, excepted %d)", vector.getData().length, dimension));
 
-        vectors.add(vector);
+        addData(vector.getCategory(), vector.getData(), 1);
     }
 
-    // Get distances to different class centers
-    // The first one is the most similar to the input vector (returns the most similar vector's index in vectors)
-    private TreeMap<Double, Integer> getDistanceToClassCenters(double[] vector) {
+    // Add vectors of the same category stored one after another in an array, i.e. row-major [vector][dimension]
+    public void addData(int category, double[] data, int count) {
+        if (data.length < count * dimension)
+            throw new IllegalArgumentException(String.format("Input is too small (%d, excepted %d)", data.length, count * dimension));
+
+        // grow the dataset like an ArrayList does
+        if (vectorCount + count > vectorCategories.length) {
+            int capacity = Math.max(vectorCount + count, vectorCategories.length * 2);
+            vectorCategories = Arrays.copyOf(vectorCategories, capacity);
+            vectors = Arrays.copyOf(vectors, capacity * dimension);
+        }
+
+        System.arraycopy(data, 0, vectors, vectorCount * dimension, count * dimension);
+        Arrays.fill(vectorCategories, vectorCount, vectorCount + count, category);
+
+        // update statistics of each row, with Welford's algorithm for the mean and variance
+        for (int vector = 0; vector <= count - 1; vector++) {
+            int n = vectorCount + vector + 1;
+            for (int row = 0; row <= dimension - 1; row++) {
+                double value = data[vector * dimension + row];
+                minOfRow[row] = Math.min(minOfRow[row], value);
+                maxOfRow[row] = Math.max(maxOfRow[row], value);
+                double diff = value - meanOfRow[row];
+                meanOfRow[row] += diff / n;
+                m2OfRow[row] += diff * (value - meanOfRow[row]);
+            }
+        }
+        vectorCount += count;
+    }
+
+    // Write the scaled values of a vector in the dataset to the array at the offset
+    void scaleVector(int vector, double[] dest, int destOffset) {
+        int offset = vector * dimension;
+        for (int i = 0; i <= dimension - 1; i++)
+            dest[destOffset + i] = (vectors[offset + i] - offsetOfRow[i]) * scaleOfRow[i];
+    }
+
+    // Get the number of dimensions expected from input vectors
+    public int getDimension() {
+        return dimension;
+    }
+
+    // Get the number of vectors in the dataset
+    public int getVectorCount() {
+        return vectorCount;
+    }
+
+    // Get the category of a vector in the dataset
+    int getVectorCategory(int vector) {
+        return vectorCategories[vector];
+    }
+
+    // Copy the current scaling of each row, see scaleVector(int, double[], int)
+    void getScaling(double[] offsetOfRow, double[] scaleOfRow) {
+        System.arraycopy(this.offsetOfRow, 0, offsetOfRow, 0, dimension);
+        System.arraycopy(this.scaleOfRow, 0, scaleOfRow, 0, dimension);
+    }
+
+    // Get index of the class center nearest to the vector stored at the offset of the array
+    // Squared distances are compared, so no square root is taken, and a distance is abandoned once it exceeds the nearest one
+    private int getNearestClassCenter(double[] array, int offset) {
         // if initializeOutputLayer() is not called first
-        if (classCenters.size() == 0)
+        if (classCenterCategories.length == 0)
             throw new IllegalStateException("Output layer is not initialized yet");
 
-        // <distance, index in classCenters>; use TreeMap so the map is sorted naturally by keys
-        TreeMap<Double, Integer> distanceToInput = new TreeMap<>();
-        for (int i = 0; i <= classCenters.size() - 1; i++)
-            distanceToInput.put(SLMaths.euclideanDistance(vector, classCenters.get(i).getData()), i);
-        return distanceToInput;
+        int nearest = -1;
+        double nearestDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i <= classCenterCategories.length - 1; i++) {
+            double distance = SLMaths.squaredEuclideanDistance(array, offset, classCenters, i * dimension, dimension, nearestDistance);
+            if (distance < nearestDistance) {
+                nearest = i;
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
     }
 
     // Initialize classCenters according to how many classes there are.
-    // The network converges faster by randomly picking a vector from (instead of generating a random vector for) each class as the class's center
+    // The network converges faster by picking vectors from (instead of generating random vectors for) each class as the class's centers
+    // The first vector of a class is its first center, and the rest are seeded with k-means++,
+    // i.e. a vector is picked with probability proportional to its squared distance to the nearest center picked so far
     public void initializeOutputLayer() {
         // reset epoch, because we drop the knowledge the output layer possesses and start from scratch
         epoch = 0;
+        stopReason = LVQNeuralNetworkStopReason.UNTRAINED;
+        lastEpoch = null;
+
+        // get all categories appeared, and the vectors of each category
+        Map<Integer, List<Integer>> vectorsOfCategory = new TreeMap<>();
+        for (int i = 0; i <= vectorCount - 1; i++)
+            vectorsOfCategory.computeIfAbsent(vectorCategories[i], category -> new ArrayList<>()).add(i);
+
+        // seeded so that the same dataset always gets the same output layer
+        Random random = new Random(41);
+        classCenters = new double[vectorsOfCategory.size() * prototypes_per_category * dimension];
+        classCenterCategories = new int[vectorsOfCategory.size() * prototypes_per_category];
+        int center = 0;
+        for (Map.Entry<Integer, List<Integer>> entry : vectorsOfCategory.entrySet())
+            center = seedClassCenters(entry.getKey(), entry.getValue(), random, center);
+
+        // drop slots of classes having fewer distinct vectors than prototypes_per_category
+        classCenters = Arrays.copyOf(classCenters, center * dimension);
+        classCenterCategories = Arrays.copyOf(classCenterCategories, center);
+    }
 
-        // get all categories appeared
-        vectors.stream()
-                .map(LabeledData::getCategory)      // map vector list to category list
-                .collect(Collectors.toSet())        // get all categories
-                .forEach(category -> vectors.stream()
-                        .filter(vector -> vector.getCategory() == category)
-                        .findAny()  // randomly pick a vector and set it the center of its class
-                        .ifPresent(randomVector -> classCenters.add(randomVector.clone()))  // create class center
-                );
+    // Pick up to prototypes_per_category vectors of a class as its centers, writing them to the slots from the given center on
+    // Return the index of the slot after the last center picked
+    private int seedClassCenters(int category, List<Integer> members, Random random, int center) {
+        // pick the first vector and set it a center of its class
+        scaleVector(members.get(0), classCenters, center * dimension);
+        classCenterCategories[center++] = category;
+
+        // squared distance from each vector of the class to its nearest center
+        double[] scaled = new double[dimension];
+        double[] distances = new double[members.size()];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        for (int picked = 1; picked <= prototypes_per_category - 1; picked++) {
+            double total = 0;
+            for (int i = 0; i <= members.size() - 1; i++) {
+                scaleVector(members.get(i), scaled, 0);
+                distances[i] = Math.min(distances[i], SLMaths.squaredEuclideanDistance(
+                        scaled, 0, classCenters, (center - 1) * dimension, dimension));
+                total += distances[i];
+            }
+            // every vector of the class is already a center
+            if (total == 0)
+                break;
+
+            // the last vector not being a center is chosen if rounding errors leave some of the target
+            double target = random.nextDouble() * total;
+            int chosen = -1;
+            for (int i = 0; i <= members.size() - 1; i++) {
+                if (distances[i] == 0)
+                    continue;
+                chosen = i;
+                target -= distances[i];
+                if (target < 0)
+                    break;
+            }
+            scaleVector(members.get(chosen), classCenters, center * dimension);
+            classCenterCategories[center++] = category;
+        }
+        return center;
     }
 
-    // Normalize the dataset!
+    // Normalize the dataset! The scaling is derived from the statistics kept by addData, and the stored vectors are
+    // not touched. Class centers are moved to the new scaling too if the output layer is already initialized
+    // A constant row has nothing to tell categories apart, so it is scaled to 0 instead of being divided by zero
     public void normalize() {
-        minMaxOfRow = SLMaths.normalize(vectors);
+        if (vectorCount == 0)
+            throw new IllegalArgumentException("The dataset must not be empty");
+
+        double[] newOffsetOfRow = new double[dimension];
+        double[] newScaleOfRow = new double[dimension];
+        for (int row = 0; row <= dimension - 1; row++) {
+            double spread;
+            if (scalingMode == LVQNeuralNetworkScalingMode.Z_SCORE) {
+                newOffsetOfRow[row] = meanOfRow[row];
+                spread = Math.sqrt(m2OfRow[row] / vectorCount);
+            } else {
+                newOffsetOfRow[row] = minOfRow[row];
+                spread = maxOfRow[row] - minOfRow[row];
+            }
+            newScaleOfRow[row] = spread == 0 ? 0 : 1 / spread;
+        }
+
+        for (int i = 0; i <= classCenters.length - 1; i++) {
+            int row = i % dimension;
+            double value = scaleOfRow[row] == 0 ? offsetOfRow[row] : classCenters[i] / scaleOfRow[row] + offsetOfRow[row];
+            classCenters[i] = (value - newOffsetOfRow[row]) * newScaleOfRow[row];
+        }
+
+        offsetOfRow = newOffsetOfRow;
+        scaleOfRow = newScaleOfRow;
     }
 
-    // start train
-    public void train() {
+    // start train; train the network for an epoch and return statistics about the epoch
+    public LVQNeuralNetworkEpochStats train() {
+        startEpoch();
+
         // for every input vector
-        for (LabeledData vector : vectors) {
-            // calculate its distance to nearest class center and multiply it with step_size
-            LabeledData nearestOutput = classCenters.get(getDistanceToClassCenters(vector.getData()).firstEntry().getValue());
-            double[] distToNearestOutput = SLMaths.multiply(SLMaths.subtract(vector.getData(), nearestOutput.getData()), step_size);
+        int misclassified = 0;
+        double[] scaled = new double[dimension];
+        for (int vector = 0; vector <= vectorCount - 1; vector++)
+            misclassified += trainVector(vector, scaled);
+
+        return finishEpoch(misclassified, vectorCount);
+    }
+
+    // Move the class center nearest to a vector, using the given array to hold the scaled vector
+    // Return 1 if the nearest center has a different category, otherwise 0
+    private int trainVector(int vector, double[] scaled) {
+        scaleVector(vector, scaled, 0);
+        int nearest = getNearestClassCenter(scaled, 0);
+        int centerOffset = nearest * dimension;
+
+        // pull the nearest class center closer by (vector - center) * step_size if the center and the vector have the same category,
+        // otherwise farther. The center is updated in place
+        boolean matched = vectorCategories[vector] == classCenterCategories[nearest];
+        double factor = matched ? step_size : -step_size;
+        for (int i = 0; i <= dimension - 1; i++)
+            classCenters[centerOffset + i] += factor * (scaled[i] - classCenters[centerOffset + i]);
+        return matched ? 0 : 1;
+    }
+
+    /**
+     * Learn new vectors of a category into the trained network, instead of retraining it over the whole dataset.
+     *
+     * The vectors are added to the dataset, and the category gets its own class centers if it is new. Starting from
+     * the current class centers, the network is then trained online for a number of passes over the new vectors and
+     * as many vectors replayed at random from the existing dataset, which keep the other categories from being forgotten.
+     * The cost therefore grows with the number of new vectors rather than the size of the dataset.
+     * Scaling is kept as is, so that the existing class centers stay valid; call {@link #normalize()} and retrain
+     * to rescale the dataset.
+     *
+     * If the output layer is not initialized yet, the dataset is normalized and the output layer is initialized first.
+     * A network restored by {@link #loadSnapshot(LVQNeuralNetworkSnapshot)} has nothing to replay, so its dataset has to
+     * be added back with {@link #addData(int, double[], int)} before it learns.
+     *
+     * @param category category of the vectors
+     * @param data vectors stored one after another, i.e. row-major [vector][dimension]
+     * @param count number of vectors in the array
+     * @param passes number of passes over the new and replayed vectors, each counted as an epoch
+     * @return statistics about the last pass, or null if no pass is made
+     * @throws IllegalStateException if the network has class centers but no dataset to replay
+     */
+    public LVQNeuralNetworkEpochStats learn(int category, double[] data, int count, int passes) {
+        if (count <= 0)
+            throw new IllegalArgumentException("There are no vectors to learn");
+        if (vectorCount == 0 && classCenterCategories.length != 0)
+            throw new IllegalStateException("The dataset must be added back to a restored network before it learns");
+
+        int from = vectorCount;
+        addData(category, data, count);
+
+        // nothing to start from
+        if (classCenterCategories.length == 0) {
+            normalize();
+            initializeOutputLayer();
+        } else if (Arrays.stream(classCenterCategories).noneMatch(center -> center == category)) {
+            // register the new category with centers picked from its vectors
+            List<Integer> members = new ArrayList<>();
+            for (int i = from; i <= vectorCount - 1; i++)
+                members.add(i);
+
+            int center = classCenterCategories.length;
+            classCenters = Arrays.copyOf(classCenters, (center + prototypes_per_category) * dimension);
+            classCenterCategories = Arrays.copyOf(classCenterCategories, center + prototypes_per_category);
+            center = seedClassCenters(category, members, new Random(41), center);
+            classCenters = Arrays.copyOf(classCenters, center * dimension);
+            classCenterCategories = Arrays.copyOf(classCenterCategories, center);
+        }
 
-            // pull the nearest class center closer by the distance above if the center and the vector have the same category, otherwise farther
-            if (vector.getCategory() == nearestOutput.getCategory())
-                nearestOutput.setData(SLMaths.add(nearestOutput.getData(), distToNearestOutput));
-            else
-                nearestOutput.setData(SLMaths.subtract(nearestOutput.getData(), distToNearestOutput));
+        // the new vectors followed by the replayed ones, which are drawn again for every pass
+        Random random = new Random(41);
+        int replayCount = Math.min(count, from);
+        int[] order = new int[count + replayCount];
+        for (int i = 0; i <= count - 1; i++)
+            order[i] = from + i;
+
+        LVQNeuralNetworkEpochStats stats = null;
+        double[] scaled = new double[dimension];
+        for (int pass = 1; pass <= passes; pass++) {
+            for (int i = count; i <= order.length - 1; i++)
+                order[i] = random.nextInt(from);
+
+            startEpoch();
+            int misclassified = 0;
+            for (int vector : order)
+                misclassified += trainVector(vector, scaled);
+            stats = finishEpoch(misclassified, order.length);
         }
 
+        stopReason = LVQNeuralNetworkStopReason.LEARNED;
+        publishSnapshot();
+        return stats;
+    }
+
+    /**
+     * Train the network for an epoch in batch mode on the given pool.
+     *
+     * Unlike {@link #train()}, which moves the nearest class center after every vector, the vectors are split into
+     * shards that are processed in parallel. Each shard sums up how every class center would be pulled or pushed by
+     * its vectors, the sums are merged, and each class center is then moved by step_size times its average pull.
+     *
+     * @param pool the pool running the shards
+     * @return statistics about the epoch
+     */
+    public LVQNeuralNetworkEpochStats train(ForkJoinPool pool) {
+        if (classCenterCategories.length == 0)
+            throw new IllegalStateException("Output layer is not initialized yet");
+
+        startEpoch();
+
+        // [center][dimension] sums of pulls, followed by [center] numbers of vectors pulling each center
+        // and the number of vectors whose nearest center has a different category
+        double[] pulls = pool.invoke(new BatchTrainTask(0, vectorCount));
+
+        int centerCount = classCenterCategories.length;
+        for (int center = 0; center <= centerCount - 1; center++) {
+            double count = pulls[centerCount * dimension + center];
+            if (count == 0)
+                continue;
+            for (int i = 0; i <= dimension - 1; i++)
+                classCenters[center * dimension + i] += step_size * pulls[center * dimension + i] / count;
+        }
+
+        return finishEpoch((int) pulls[centerCount * (dimension + 1)], vectorCount);
+    }
+
+    /**
+     * Train the network until the class centers stop moving or the maximum epoch is reached.
+     *
+     * @param maxEpoch the maximum number of epochs
+     * @param tolerance the network is considered converged once the class centers move less than this in total
+     *                  during an epoch; 0 to always train for maxEpoch epochs
+     * @param pool the pool to train in batch mode on (see {@link #train(ForkJoinPool)}), or null to train online
+     * @return statistics about the last epoch, or null if no epoch is trained
+     */
+    public LVQNeuralNetworkEpochStats train(int maxEpoch, double tolerance, ForkJoinPool pool) {
+        LVQNeuralNetworkEpochStats stats = null;
+        for (int i = 0; i <= maxEpoch - 1; i++) {
+            stats = pool == null ? train() : train(pool);
+            if (stats.getDisplacement() < tolerance) {
+                stopReason = LVQNeuralNetworkStopReason.CONVERGED;
+                publishSnapshot();
+                return stats;
+            }
+        }
+
+        stopReason = LVQNeuralNetworkStopReason.MAX_EPOCH;
+        publishSnapshot();
+        return stats;
+    }
+
+    // Sums up pulls on class centers by a range of vectors, splitting the range until it is small enough
+    private class BatchTrainTask extends RecursiveTask<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        // Ranges with no more vectors than this are processed directly
+        private static final int SHARD_SIZE = 1024;
+
+        private final int from;
+        private final int to;
+
+        private BatchTrainTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from > SHARD_SIZE) {
+                int middle = (from + to) >>> 1;
+                BatchTrainTask left = new BatchTrainTask(from, middle);
+                left.fork();
+                double[] pulls = new BatchTrainTask(middle, to).compute();
+                double[] leftPulls = left.join();
+                for (int i = 0; i <= pulls.length - 1; i++)
+                    pulls[i] += leftPulls[i];
+                return pulls;
+            }
+
+            int centerCount = classCenterCategories.length;
+            double[] pulls = new double[centerCount * (dimension + 1) + 1];
+            double[] scaled = new double[dimension];
+            for (int vector = from; vector <= to - 1; vector++) {
+                scaleVector(vector, scaled, 0);
+                int nearest = getNearestClassCenter(scaled, 0);
+                int centerOffset = nearest * dimension;
+
+                // pull if the center and the vector have the same category, otherwise push
+                double sign = vectorCategories[vector] == classCenterCategories[nearest] ? 1 : -1;
+                for (int i = 0; i <= dimension - 1; i++)
+                    pulls[centerOffset + i] += sign * (scaled[i] - classCenters[centerOffset + i]);
+                pulls[centerCount * dimension + nearest]++;
+                if (sign < 0)
+                    pulls[centerCount * (dimension + 1)]++;
+            }
+            return pulls;
+        }
+    }
+
+    // Remember where class centers are before they are moved in an epoch
+    private void startEpoch() {
+        if (previousClassCenters.length != classCenters.length)
+            previousClassCenters = new double[classCenters.length];
+        System.arraycopy(classCenters, 0, previousClassCenters, 0, classCenters.length);
+        stopReason = LVQNeuralNetworkStopReason.TRAINING;
+        epochStartTime = System.nanoTime();
+    }
+
+    // Decrease step size, count the epoch, publish the trained output layer and return statistics about the epoch
+    // in which the given number of vectors were trained
+    private LVQNeuralNetworkEpochStats finishEpoch(int misclassified, int trained) {
+        // how far the class centers moved in this epoch
+        double displacement = 0;
+        for (int center = 0; center <= classCenterCategories.length - 1; center++)
+            displacement += SLMaths.euclideanDistance(classCenters, center * dimension, previousClassCenters, center * dimension, dimension);
+
         // decrease step_size until it is smaller than or equal to min_step_size
         if (step_size > min_step_size)
             step_size *= step_dec_rate;
@@ -124,19 +538,84 @@ public class LVQNeuralNetwork {
             step_size = min_step_size;
 
         epoch++;
+        lastEpoch = new LVQNeuralNetworkEpochStats(epoch, displacement, trained == 0 ? 0 : (double) misclassified / trained);
+
+        publishSnapshot();
+        Metrics.TRAIN_EPOCH.recordSince(epochStartTime);
+        return lastEpoch;
+    }
+
+    // Copy the current output layer into a new immutable snapshot and make it visible to other threads
+    private void publishSnapshot() {
+        snapshot = new LVQNeuralNetworkSnapshot(dimension, classCenters.clone(), classCenterCategories.clone(),
+                scalingMode, offsetOfRow.clone(), scaleOfRow.clone(), new LVQNeuralNetworkSummary(epoch, step_size, vectorCount, classCenterCategories.length, stopReason, lastEpoch));
+    }
+
+    // Get the latest trained output layer, or null if the network has not been trained yet
+    public LVQNeuralNetworkSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    // Restore the output layer, normalization and learning state from a snapshot, e.g. one loaded from a checkpoint,
+    // and publish it so that the network can classify data immediately
+    // The dataset is not part of a snapshot. Vectors added afterwards don't change the scaling until normalize() is called
+    public void loadSnapshot(LVQNeuralNetworkSnapshot snapshot) {
+        if (snapshot.getDimension() != dimension)
+            throw new IllegalArgumentException(String.format("Snapshot has illegal dimensions (%d, excepted %d)", snapshot.getDimension(), dimension));
+
+        classCenters = new double[snapshot.getCenterCount() * dimension];
+        classCenterCategories = new int[snapshot.getCenterCount()];
+        for (int i = 0; i <= snapshot.getCenterCount() - 1; i++) {
+            System.arraycopy(snapshot.getCenter(i), 0, classCenters, i * dimension, dimension);
+            classCenterCategories[i] = snapshot.getCenterCategory(i);
+        }
+        scalingMode = snapshot.getScalingMode();
+        double[][] scalingOfRow = snapshot.getScalingOfRow();
+        for (int i = 0; i <= dimension - 1; i++) {
+            offsetOfRow[i] = scalingOfRow[i][0];
+            scaleOfRow[i] = scalingOfRow[i][1];
+        }
+
+        LVQNeuralNetworkSummary summary = snapshot.getSummaryStatistics();
+        epoch = summary.getEpoch();
+        step_size = summary.getCurrentStepSize();
+        stopReason = summary.getStopReason();
+        lastEpoch = summary.getLastEpoch();
+
+        this.snapshot = snapshot;
     }
 
-    // Classify a data and return the classification result
+    // Classify a data with the latest trained output layer and return the classification result. Safe to call from any thread
+    @Override
     public LVQNeuralNetworkPredictResult predict(double[] vector) {
-        if (classCenters.size() == 0)
+        return predict(vector, false);
+    }
+
+    // Classify a data, optionally ranking all class centers in the result. See LVQNeuralNetworkSnapshot.predict(double[], boolean)
+    public LVQNeuralNetworkPredictResult predict(double[] vector, boolean fullRanking) {
+        LVQNeuralNetworkSnapshot snapshot = this.snapshot;
+        if (snapshot == null)
             throw new IllegalStateException("Output layer is not initialized yet");
 
-        // normalize the input data
-        double[] vectorNormalized = vector.clone();
-        for (int i = 0; i <= vector.length - 1; i++)
-            vectorNormalized[i] = SLMaths.normalize(vector[i], minMaxOfRow[i][0], minMaxOfRow[i][1]);
+        long startTime = System.nanoTime();
+        LVQNeuralNetworkPredictResult result = snapshot.predict(vector, fullRanking);
+        Metrics.PREDICT.recordSince(startTime);
+        Metrics.CLASSIFIED_VECTORS.increment();
+        return result;
+    }
 
-        return new LVQNeuralNetworkPredictResult(getDistanceToClassCenters(vectorNormalized));
+    // Classify many vectors at once with the latest trained output layer. See LVQNeuralNetworkSnapshot.predict(double[], int, ...)
+    @Override
+    public void predict(double[] matrix, int count, int[] bestCategories, double[] bestDistances, double[] secondDistances,
+                        boolean parallel) {
+        LVQNeuralNetworkSnapshot snapshot = this.snapshot;
+        if (snapshot == null)
+            throw new IllegalStateException("Output layer is not initialized yet");
+
+        long startTime = System.nanoTime();
+        snapshot.predict(matrix, count, bestCategories, bestDistances, secondDistances, parallel);
+        Metrics.BATCH_PREDICT.recordSince(startTime);
+        Metrics.CLASSIFIED_VECTORS.add(count);
     }
 
     // print the distribution of vectors; just for fun
@@ -146,19 +625,22 @@ public class LVQNeuralNetwork {
             throw new IllegalArgumentException("The network does not support printing vectors with more than 2 dimensions");
 
         System.out.println("Input vectors: ");
-        int[][] outputImage = new int[vectors.size()][vectors.size()];
-        for (LabeledData vector : vectors)
-            outputImage[(int) (vector.getData()[0] * 10)][(int) (vector.getData()[1] * 10)] = vector.getCategory() + 1;
+        int[][] outputImage = new int[vectorCount][vectorCount];
+        double[] scaled = new double[2];
+        for (int i = 0; i <= vectorCount - 1; i++) {
+            scaleVector(i, scaled, 0);
+            outputImage[(int) (scaled[0] * 10)][(int) (scaled[1] * 10)] = vectorCategories[i] + 1;
+        }
 
         // draw
-        System.out.println("+" + StringUtils.repeat("--", vectors.size()) + "+");
+        System.out.println("+" + StringUtils.repeat("--", vectorCount) + "+");
         for (int i = 0; i <= outputImage.length - 1; i++) {
             System.out.print("|");
             for (int j = 0; j <= outputImage.length - 1; j++)
                 System.out.print(outputImage[i][j] == 0 ? "  " : outputImage[i][j] + " ");
             System.out.print("|\n");
         }
-        System.out.println("+" + StringUtils.repeat("--", vectors.size()) + "+");
+        System.out.println("+" + StringUtils.repeat("--", vectorCount) + "+");
 
         // clear outputImage[][] for drawing output layer
         for (int i = 0; i <= outputImage.length - 1; i++)
@@ -166,16 +648,16 @@ public class LVQNeuralNetwork {
                 outputImage[i][j] = 0;
         // draw
         System.out.println("Output layer: ");
-        for (LabeledData vector : classCenters)
-            outputImage[(int) Math.round(vector.getData()[0] * 10)][(int) Math.round(vector.getData()[1] * 10)] = vector.getCategory() + 1;
-        System.out.println("+" + StringUtils.repeat("--", vectors.size()) + "+");
+        for (int i = 0; i <= classCenterCategories.length - 1; i++)
+            outputImage[(int) Math.round(classCenters[i * 2] * 10)][(int) Math.round(classCenters[i * 2 + 1] * 10)] = classCenterCategories[i] + 1;
+        System.out.println("+" + StringUtils.repeat("--", vectorCount) + "+");
         for (int i = 0; i <= outputImage.length - 1; i++) {
             System.out.print("|");
             for (int j = 0; j <= outputImage.length - 1; j++)
                 System.out.print(outputImage[i][j] == 0 ? "  " : outputImage[i][j] + " ");
             System.out.print("|\n");
         }
-        System.out.println("+" + StringUtils.repeat("--", vectors.size()) + "+");
+        System.out.println("+" + StringUtils.repeat("--", vectorCount) + "+");
 
         /* The output would be something like:
 
@@ -195,17 +677,31 @@ public class LVQNeuralNetwork {
         */
     }
 
-    // print network info
+    // print network info from the latest trained output layer. Safe to call from any thread
+    // The dataset may be changed by training meanwhile, so it is summarized by the snapshot instead of being printed
     public void printStats(Logger logger) {
-        logger.info("Current Epoch: " + epoch + ", Current step size: " + step_size);
+        LVQNeuralNetworkSnapshot snapshot = this.snapshot;
+        if (snapshot == null) {
+            logger.info("Output layer is not initialized yet");
+            return;
+        }
+
+        LVQNeuralNetworkSummary summary = snapshot.getSummaryStatistics();
+        logger.info("Current Epoch: " + summary.getEpoch() + ", Current step size: " + summary.getCurrentStepSize());
         logger.info("Output layer:");
-        classCenters.forEach(vector -> logger.info(" - " + vector.getCategory() + " " +Arrays.toString(vector.getData())));
-        logger.info("Dataset (normalized):");
-        vectors.forEach(vector -> logger.info(" - " + vector.getCategory() + " " +Arrays.toString(vector.getData())));
+        for (int i = 0; i <= snapshot.getCenterCount() - 1; i++)
+            logger.info(" - " + snapshot.getCenterCategory(i) + " " + Arrays.toString(snapshot.getCenter(i)));
+        logger.info("Dataset: " + summary.getInputCount() + " vector(s), scaling (" + snapshot.getScalingMode() + ") [offset, scale] of each row:");
+        for (double[] scaling : snapshot.getScalingOfRow())
+            logger.info(" - " + Arrays.toString(scaling));
     }
 
-    // Get summary statistics of the network
+    // Get summary statistics of the latest trained output layer. Safe to call from any thread
     public LVQNeuralNetworkSummary getSummaryStatistics() {
-        return new LVQNeuralNetworkSummary(epoch, step_size, vectors.size(), classCenters.size());
+        LVQNeuralNetworkSnapshot snapshot = this.snapshot;
+        if (snapshot == null)
+            return new LVQNeuralNetworkSummary(0, step_size, vectorCount, 0, LVQNeuralNetworkStopReason.UNTRAINED, null);
+
+        return snapshot.getSummaryStatistics();
     }
 }
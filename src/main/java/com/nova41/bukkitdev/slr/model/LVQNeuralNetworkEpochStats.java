@@ -0,0 +1,55 @@
+package com.nova41.bukkitdev.slr.model;
+
+/**
+ * Statistics about an epoch of training of a LVQ Neural Network.
+ */
+public final class LVQNeuralNetworkEpochStats {
+    // the epoch these statistics are about
+    private final int epoch;
+
+    // total euclidean distance the class centers moved during the epoch
+    private final double displacement;
+
+    // fraction of input vectors whose nearest class center had a different category during the epoch
+    private final double misclassificationRate;
+
+    /**
+     * Create statistics about an epoch. The constructor can be accessed only by a neural network.
+     *
+     * @param epoch the epoch these statistics are about
+     * @param displacement total euclidean distance the class centers moved during the epoch
+     * @param misclassificationRate fraction of input vectors whose nearest class center had a different category
+     */
+    LVQNeuralNetworkEpochStats(int epoch, double displacement, double misclassificationRate) {
+        this.epoch = epoch;
+        this.displacement = displacement;
+        this.misclassificationRate = misclassificationRate;
+    }
+
+    /**
+     * Get the epoch these statistics are about, starting from 1.
+     *
+     * @return the epoch these statistics are about
+     */
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Get the total euclidean distance the class centers moved during the epoch.
+     *
+     * @return the total displacement of class centers
+     */
+    public double getDisplacement() {
+        return displacement;
+    }
+
+    /**
+     * Get the fraction of input vectors whose nearest class center had a different category during the epoch.
+     *
+     * @return the training misclassification rate, from 0 to 1
+     */
+    public double getMisclassificationRate() {
+        return misclassificationRate;
+    }
+}
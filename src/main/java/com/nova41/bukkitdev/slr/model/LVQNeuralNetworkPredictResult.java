@@ -1,23 +1,52 @@
 package com.nova41.bukkitdev.slr.model;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
-
 /**
  * The guess of a neural network when you ask the network to classify a vector
  */
 public class LVQNeuralNetworkPredictResult {
 
-    // Distances to different class centers
-    private List<Map.Entry<Double, Integer>> distances;
+    // The best matched category and the distance to it
+    private final int category;
+    private final double difference;
+
+    // Distance to the nearest class center of another category
+    private final double secondDifference;
+
+    // Categories of all class centers and distances to them, nearest first; null if the full ranking is not requested
+    private final int[] rankedCategories;
+    private final double[] rankedDifferences;
+
+    /**
+     * Create a new predict result with the full ranking. The constructor can be accessed only by a neural network.
+     */
+    LVQNeuralNetworkPredictResult(int[] rankedCategories, double[] rankedDifferences) {
+        this.category = rankedCategories[0];
+        this.difference = rankedDifferences[0];
+        double secondDifference = Double.POSITIVE_INFINITY;
+        for (int i = 1; i <= rankedCategories.length - 1; i++)
+            if (rankedCategories[i] != rankedCategories[0]) {
+                secondDifference = rankedDifferences[i];
+                break;
+            }
+        this.secondDifference = secondDifference;
+        this.rankedCategories = rankedCategories;
+        this.rankedDifferences = rankedDifferences;
+    }
 
     /**
-     * Create a new predict result. The constructor can be accessed only by a neural network.
+     * Create a predict result without the full ranking, e.g. from the output of a batch prediction,
+     * see {@link LVQNeuralNetwork#predict(double[], int, int[], double[], double[], boolean)}.
+     *
+     * @param category the best matched category
+     * @param difference distance to the best matched class center
+     * @param secondDifference distance to the nearest class center of another category
      */
-    LVQNeuralNetworkPredictResult(TreeMap<Double, Integer> distances) {
-        this.distances = new ArrayList<>(distances.entrySet());
+    public LVQNeuralNetworkPredictResult(int category, double difference, double secondDifference) {
+        this.category = category;
+        this.difference = difference;
+        this.secondDifference = secondDifference;
+        this.rankedCategories = null;
+        this.rankedDifferences = null;
     }
 
     /**
@@ -26,7 +55,7 @@ public class LVQNeuralNetworkPredictResult {
      * @return the best matched category of predicted data
      */
     public int getCategory() {
-        return distances.get(0).getValue();
+        return category;
     }
 
     /**
@@ -35,7 +64,7 @@ public class LVQNeuralNetworkPredictResult {
      * @return likelihood between the input and the matched category
      */
     public double getDifference() {
-        return distances.get(0).getKey();
+        return difference;
     }
 
     /**
@@ -44,7 +73,40 @@ public class LVQNeuralNetworkPredictResult {
      * @return the likelihood between the input and the best matched category
      */
     public double getLikelihood() {
-        return distances.get(0).getKey() / distances.get(1).getKey();
+        return difference / secondDifference;
+    }
+
+    /**
+     * Check whether the result contains the full ranking of class centers.
+     *
+     * @return whether the full ranking was requested when predicting
+     */
+    public boolean hasRanking() {
+        return rankedCategories != null;
+    }
+
+    /**
+     * Get categories of all class centers, the nearest first.
+     *
+     * @return categories of all class centers
+     * @throws IllegalStateException if the full ranking was not requested when predicting
+     */
+    public int[] getRankedCategories() {
+        if (rankedCategories == null)
+            throw new IllegalStateException("Full ranking was not requested");
+        return rankedCategories.clone();
+    }
+
+    /**
+     * Get distances to all class centers, the nearest first.
+     *
+     * @return distances to all class centers
+     * @throws IllegalStateException if the full ranking was not requested when predicting
+     */
+    public double[] getRankedDifferences() {
+        if (rankedDifferences == null)
+            throw new IllegalStateException("Full ranking was not requested");
+        return rankedDifferences.clone();
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,16 @@
+package com.nova41.bukkitdev.slr.model;
+
+/**
+ * How a LVQ neural network scales each feature of the vectors before comparing them.
+ */
+public enum LVQNeuralNetworkScalingMode {
+    /**
+     * Features are mapped from [min, max] of the dataset to [0, 1].
+     */
+    MIN_MAX,
+
+    /**
+     * Features are shifted by the mean of the dataset and divided by its standard deviation.
+     */
+    Z_SCORE
+}
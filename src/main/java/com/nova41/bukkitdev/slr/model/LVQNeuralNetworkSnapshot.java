@@ -0,0 +1,331 @@
+package com.nova41.bukkitdev.slr.model;
+
+import com.nova41.bukkitdev.slr.util.SLMaths;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable copy of the output layer of a LVQ neural network, published by the network after it is trained.
+ *
+ * A snapshot never changes once created, so any number of threads can classify vectors with it without locking,
+ * even while the network that published it is being trained.
+ */
+public final class LVQNeuralNetworkSnapshot {
+
+    // the number of dimensions expected from input vectors
+    private final int dimension;
+
+    // class centers stored one after another, i.e. row-major [center][dimension]
+    private final double[] centers;
+
+    // category of each class center
+    private final int[] centerCategories;
+
+    // tree over the class centers, and the category of each center in tree order
+    // with hundreds of centers, only the centers near a vector are compared with it
+    private final KDTree tree;
+    private final int[] treeCategories;
+
+    // how the network scaled features, and the scaling of each row: a value is normalized to (value - offset) * scale
+    private final LVQNeuralNetworkScalingMode scalingMode;
+    private final double[] offsetOfRow;
+    private final double[] scaleOfRow;
+
+    // statistics of the network at the time of the snapshot
+    private final LVQNeuralNetworkSummary summary;
+
+    /**
+     * Create a new snapshot. The arrays are owned by the snapshot and must not be modified afterwards.
+     * The constructor can be accessed only by a neural network.
+     */
+    LVQNeuralNetworkSnapshot(int dimension, double[] centers, int[] centerCategories, LVQNeuralNetworkScalingMode scalingMode,
+                             double[] offsetOfRow, double[] scaleOfRow, LVQNeuralNetworkSummary summary) {
+        this.dimension = dimension;
+        this.centers = centers;
+        this.centerCategories = centerCategories;
+        this.scalingMode = scalingMode;
+        this.offsetOfRow = offsetOfRow;
+        this.scaleOfRow = scaleOfRow;
+        this.summary = summary;
+
+        tree = new KDTree(dimension, centers);
+        treeCategories = new int[centerCategories.length];
+        for (int i = 0; i <= centerCategories.length - 1; i++)
+            treeCategories[i] = centerCategories[tree.getIndex(i)];
+    }
+
+    /**
+     * Classify a vector.
+     *
+     * @param vector the vector to be classified, which is not modified
+     * @return the classification result, without the full ranking of class centers
+     */
+    public LVQNeuralNetworkPredictResult predict(double[] vector) {
+        return predict(vector, false);
+    }
+
+    /**
+     * Classify a vector.
+     *
+     * @param vector the vector to be classified, which is not modified
+     * @param fullRanking whether to rank all class centers by their distances to the vector,
+     *                    otherwise only the nearest two are looked for
+     * @return the classification result
+     */
+    public LVQNeuralNetworkPredictResult predict(double[] vector, boolean fullRanking) {
+        if (vector.length != dimension)
+            throw new IllegalArgumentException(String.format("Input has illegal dimensions (%d, excepted %d)", vector.length, dimension));
+
+        if (!fullRanking) {
+            int[] bestCategory = new int[1];
+            double[] bestDistance = new double[1];
+            double[] secondDistance = new double[1];
+            predictRow(vector.clone(), 0, bestCategory, bestDistance, secondDistance);
+            return new LVQNeuralNetworkPredictResult(bestCategory[0], bestDistance[0], secondDistance[0]);
+        }
+
+        // normalize the input data
+        double[] vectorNormalized = new double[dimension];
+        for (int i = 0; i <= dimension - 1; i++)
+            vectorNormalized[i] = (vector[i] - offsetOfRow[i]) * scaleOfRow[i];
+
+        double[] distances = new double[centerCategories.length];
+        for (int i = 0; i <= centerCategories.length - 1; i++)
+            distances[i] = SLMaths.euclideanDistance(vectorNormalized, 0, centers, i * dimension, dimension);
+
+        // sort class centers by their distances to the input, the nearest first
+        int[] ranking = IntStream.range(0, distances.length).boxed()
+                .sorted(Comparator.comparingDouble(i -> distances[i]))
+                .mapToInt(i -> i)
+                .toArray();
+        int[] rankedCategories = new int[ranking.length];
+        double[] rankedDistances = new double[ranking.length];
+        for (int i = 0; i <= ranking.length - 1; i++) {
+            rankedCategories[i] = centerCategories[ranking[i]];
+            rankedDistances[i] = distances[ranking[i]];
+        }
+        return new LVQNeuralNetworkPredictResult(rankedCategories, rankedDistances);
+    }
+
+    /**
+     * Classify many vectors at once. The i-th vector is stored in matrix[i * dimension, (i + 1) * dimension).
+     * The matrix is normalized in place, and the results are written to the output arrays.
+     *
+     * @param matrix vectors stored one after another, normalized in place
+     * @param count number of vectors in the matrix
+     * @param bestCategories receives the best matched category of each vector
+     * @param bestDistances receives the distance between each vector and its best matched class center
+     * @param secondDistances receives the distance between each vector and the nearest class center of another category,
+     *                        or {@link Double#POSITIVE_INFINITY} if there is only one category
+     * @param parallel whether to classify the vectors on multiple threads
+     */
+    public void predict(double[] matrix, int count, int[] bestCategories, double[] bestDistances, double[] secondDistances,
+                        boolean parallel) {
+        if (matrix.length < count * dimension)
+            throw new IllegalArgumentException(String.format("Matrix is too small (%d, excepted %d)", matrix.length, count * dimension));
+
+        if (parallel)
+            IntStream.range(0, count).parallel().forEach(row -> predictRow(matrix, row, bestCategories, bestDistances, secondDistances));
+        else
+            for (int row = 0; row <= count - 1; row++)
+                predictRow(matrix, row, bestCategories, bestDistances, secondDistances);
+    }
+
+    // Normalize a row in the matrix and find the nearest class center of it, and the nearest one of another category
+    private void predictRow(double[] matrix, int row, int[] bestCategories, double[] bestDistances, double[] secondDistances) {
+        int offset = row * dimension;
+        for (int i = 0; i <= dimension - 1; i++)
+            matrix[offset + i] = (matrix[offset + i] - offsetOfRow[i]) * scaleOfRow[i];
+
+        NearestCenters nearest = new NearestCenters();
+        tree.search(matrix, offset, nearest);
+
+        bestCategories[row] = nearest.bestCategory;
+        bestDistances[row] = Math.sqrt(nearest.bestDistance);
+        secondDistances[row] = Math.sqrt(nearest.secondDistance);
+    }
+
+    // The nearest class center found so far, and the nearest one of another category
+    // Squared distances are compared, and the square root is taken only for the results
+    // A center farther than the second distance changes nothing, so the bound is the second distance.
+    // Centers can be offered in any order: the nearest center of another category is tracked whichever center is the best
+    private final class NearestCenters implements KDTree.Visitor {
+        private int bestCategory = -1;
+        private double bestDistance = Double.POSITIVE_INFINITY;
+        private double secondDistance = Double.POSITIVE_INFINITY;
+
+        @Override
+        public double bound() {
+            return secondDistance;
+        }
+
+        @Override
+        public void offer(int position, double distance) {
+            int category = treeCategories[position];
+            if (distance < bestDistance) {
+                // the previous best is the nearest center of another category, unless it is of the same category
+                if (category != bestCategory)
+                    secondDistance = bestDistance;
+                bestDistance = distance;
+                bestCategory = category;
+            } else if (distance < secondDistance && category != bestCategory)
+                secondDistance = distance;
+        }
+    }
+
+    /**
+     * Get the number of dimensions expected from input vectors.
+     *
+     * @return the number of dimensions expected from input vectors
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Get the number of class centers.
+     *
+     * @return the number of class centers
+     */
+    public int getCenterCount() {
+        return centerCategories.length;
+    }
+
+    /**
+     * Get the category of a class center.
+     *
+     * @param index index of the class center
+     * @return the category of the class center
+     */
+    public int getCenterCategory(int index) {
+        return centerCategories[index];
+    }
+
+    /**
+     * Get a copy of a class center.
+     *
+     * @param index index of the class center
+     * @return a copy of the class center
+     */
+    public double[] getCenter(int index) {
+        return Arrays.copyOfRange(centers, index * dimension, (index + 1) * dimension);
+    }
+
+    /**
+     * Get how the network scaled features.
+     *
+     * @return how the network scaled features
+     */
+    public LVQNeuralNetworkScalingMode getScalingMode() {
+        return scalingMode;
+    }
+
+    /**
+     * Get the scaling of each row, which normalizes a value to (value - offset) * scale.
+     *
+     * @return double[row number][0 = offset of this row, 1 = scale of this row]
+     */
+    public double[][] getScalingOfRow() {
+        double[][] scaling = new double[dimension][];
+        for (int i = 0; i <= dimension - 1; i++)
+            scaling[i] = new double[]{offsetOfRow[i], scaleOfRow[i]};
+        return scaling;
+    }
+
+    /**
+     * Write the snapshot to an output, e.g. to save it as a checkpoint.
+     *
+     * @param out where the snapshot is written
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(dimension);
+        out.writeInt(centerCategories.length);
+        for (int i = 0; i <= centerCategories.length - 1; i++) {
+            out.writeInt(centerCategories[i]);
+            for (int j = 0; j <= dimension - 1; j++)
+                out.writeDouble(centers[i * dimension + j]);
+        }
+        out.writeUTF(scalingMode.name());
+        for (int i = 0; i <= dimension - 1; i++) {
+            out.writeDouble(offsetOfRow[i]);
+            out.writeDouble(scaleOfRow[i]);
+        }
+
+        out.writeInt(summary.getEpoch());
+        out.writeDouble(summary.getCurrentStepSize());
+        out.writeInt(summary.getInputCount());
+        out.writeUTF(summary.getStopReason().name());
+        LVQNeuralNetworkEpochStats lastEpoch = summary.getLastEpoch();
+        out.writeBoolean(lastEpoch != null);
+        if (lastEpoch != null) {
+            out.writeInt(lastEpoch.getEpoch());
+            out.writeDouble(lastEpoch.getDisplacement());
+            out.writeDouble(lastEpoch.getMisclassificationRate());
+        }
+    }
+
+    /**
+     * Read a snapshot written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in where the snapshot is read from
+     * @return the snapshot
+     * @throws IOException if an I/O error occurs or the data is malformed
+     */
+    public static LVQNeuralNetworkSnapshot readFrom(DataInput in) throws IOException {
+        int dimension = in.readInt();
+        int centerCount = in.readInt();
+        if (dimension <= 0 || centerCount <= 0)
+            throw new IOException("Malformed snapshot");
+
+        double[] centers = new double[centerCount * dimension];
+        int[] centerCategories = new int[centerCount];
+        for (int i = 0; i <= centerCount - 1; i++) {
+            centerCategories[i] = in.readInt();
+            for (int j = 0; j <= dimension - 1; j++)
+                centers[i * dimension + j] = in.readDouble();
+        }
+        LVQNeuralNetworkScalingMode scalingMode;
+        try {
+            scalingMode = LVQNeuralNetworkScalingMode.valueOf(in.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed snapshot", e);
+        }
+        double[] offsetOfRow = new double[dimension];
+        double[] scaleOfRow = new double[dimension];
+        for (int i = 0; i <= dimension - 1; i++) {
+            offsetOfRow[i] = in.readDouble();
+            scaleOfRow[i] = in.readDouble();
+        }
+
+        int epoch = in.readInt();
+        double step_size = in.readDouble();
+        int input_count = in.readInt();
+        LVQNeuralNetworkStopReason stop_reason;
+        try {
+            stop_reason = LVQNeuralNetworkStopReason.valueOf(in.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed snapshot", e);
+        }
+        LVQNeuralNetworkEpochStats last_epoch = in.readBoolean()
+                ? new LVQNeuralNetworkEpochStats(in.readInt(), in.readDouble(), in.readDouble())
+                : null;
+
+        return new LVQNeuralNetworkSnapshot(dimension, centers, centerCategories, scalingMode, offsetOfRow, scaleOfRow,
+                new LVQNeuralNetworkSummary(epoch, step_size, input_count, centerCount, stop_reason, last_epoch));
+    }
+
+    /**
+     * Get summary statistics of the network at the time of the snapshot.
+     *
+     * @return summary statistics of the network
+     */
+    public LVQNeuralNetworkSummary getSummaryStatistics() {
+        return summary;
+    }
+}
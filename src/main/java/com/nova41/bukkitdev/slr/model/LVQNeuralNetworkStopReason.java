@@ -0,0 +1,31 @@
+package com.nova41.bukkitdev.slr.model;
+
+/**
+ * Why a LVQ neural network stopped training.
+ */
+public enum LVQNeuralNetworkStopReason {
+    /**
+     * The output layer has not been trained yet.
+     */
+    UNTRAINED,
+
+    /**
+     * The network is being trained, or it was trained epoch by epoch without a stop condition.
+     */
+    TRAINING,
+
+    /**
+     * The maximum number of epochs was reached.
+     */
+    MAX_EPOCH,
+
+    /**
+     * The class centers stopped moving, i.e. their displacement in an epoch fell below the tolerance.
+     */
+    CONVERGED,
+
+    /**
+     * New vectors were learned into the trained network, without retraining it over the whole dataset.
+     */
+    LEARNED
+}
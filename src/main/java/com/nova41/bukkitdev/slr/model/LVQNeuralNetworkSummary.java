@@ -14,18 +14,27 @@ public final class LVQNeuralNetworkSummary {
     private int input_count;
     private int output_count;
 
+    // why the network stopped training, and statistics about the last epoch (null if not trained)
+    private LVQNeuralNetworkStopReason stop_reason;
+    private LVQNeuralNetworkEpochStats last_epoch;
+
     /**
      * Create a summary for a LVQ neural network. The constructor can be accessed only by a neural network.
      *  @param epoch times the network has been trained
      * @param step_size current step_size of the network
      * @param input_count number of input vectors
      * @param output_count number of neurons in output layer
+     * @param stop_reason why the network stopped training
+     * @param last_epoch statistics about the last epoch, null if not trained
      */
-    LVQNeuralNetworkSummary(int epoch, double step_size, int input_count, int output_count) {
+    LVQNeuralNetworkSummary(int epoch, double step_size, int input_count, int output_count,
+                            LVQNeuralNetworkStopReason stop_reason, LVQNeuralNetworkEpochStats last_epoch) {
         this.epoch = epoch;
         this.step_size = step_size;
         this.input_count = input_count;
         this.output_count = output_count;
+        this.stop_reason = stop_reason;
+        this.last_epoch = last_epoch;
     }
 
     /**
@@ -62,4 +71,22 @@ public final class LVQNeuralNetworkSummary {
     public int getOutputCount() {
         return output_count;
     }
+
+    /**
+     * Get why the network stopped training.
+     *
+     * @return why the network stopped training
+     */
+    public LVQNeuralNetworkStopReason getStopReason() {
+        return stop_reason;
+    }
+
+    /**
+     * Get statistics about the last epoch.
+     *
+     * @return statistics about the last epoch, or null if the network has not been trained
+     */
+    public LVQNeuralNetworkEpochStats getLastEpoch() {
+        return last_epoch;
+    }
 }
@@ -0,0 +1,54 @@
+package com.nova41.bukkitdev.slr.model;
+
+/**
+ * The classification of a player at some time: the features classified, the result and when it was made.
+ *
+ * The player may change his/her behaviour after the verdict is made, so the confidence of a verdict decays as it gets older.
+ */
+public final class Verdict {
+
+    private final double[] features;
+    private final LVQNeuralNetworkPredictResult result;
+    private final long timestamp;
+
+    /**
+     * Create a new verdict.
+     *
+     * @param features the features classified, which must not be modified afterwards
+     * @param result the classification result
+     * @param timestamp time (milliseconds) when the verdict is made
+     */
+    public Verdict(double[] features, LVQNeuralNetworkPredictResult result, long timestamp) {
+        this.features = features;
+        this.result = result;
+        this.timestamp = timestamp;
+    }
+
+    public double[] getFeatures() {
+        return features.clone();
+    }
+
+    public LVQNeuralNetworkPredictResult getResult() {
+        return result;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Get how confident the verdict is at the given time. A verdict starts with a confidence of 1 - likelihood
+     * (between 0 and 1, higher is more confident), which then halves every halfLife milliseconds.
+     *
+     * @param now the current time (milliseconds)
+     * @param halfLife how long (milliseconds) it takes for the confidence to halve, 0 to never decay
+     * @return the confidence of the verdict
+     */
+    public double getConfidence(long now, long halfLife) {
+        double likelihood = result.getLikelihood();
+        double confidence = Double.isNaN(likelihood) ? 0 : 1 - Math.min(1, likelihood);
+        if (halfLife <= 0)
+            return confidence;
+        return confidence * Math.pow(0.5, (double) Math.max(0, now - timestamp) / halfLife);
+    }
+}
@@ -0,0 +1,96 @@
+package com.nova41.bukkitdev.slr.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * An angle sequence logged from a player and the features extracted from it, dumped for offline analysis.
+ */
+public final class DumpRecord {
+
+    // when the sequence was dumped (milliseconds)
+    private final long timestamp;
+
+    // name of the player who produced the sequence
+    private final String playerName;
+
+    private final double[] features;
+    private final float[] angles;
+
+    /**
+     * Create a new record. The arrays are owned by the record and must not be modified afterwards.
+     *
+     * @param timestamp when the sequence was dumped (milliseconds)
+     * @param playerName name of the player who produced the sequence
+     * @param features features extracted from the sequence
+     * @param angles the angle sequence, oldest first
+     */
+    public DumpRecord(long timestamp, String playerName, double[] features, float[] angles) {
+        this.timestamp = timestamp;
+        this.playerName = playerName;
+        this.features = features;
+        this.angles = angles;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    public double[] getFeatures() {
+        return features.clone();
+    }
+
+    public float[] getAngles() {
+        return angles.clone();
+    }
+
+    /**
+     * Write the record.
+     *
+     * @param out where the record is written to
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(timestamp);
+        out.writeUTF(playerName);
+        out.writeInt(features.length);
+        for (double feature : features)
+            out.writeDouble(feature);
+        out.writeInt(angles.length);
+        for (float angle : angles)
+            out.writeFloat(angle);
+    }
+
+    /**
+     * Read a record written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in where the record is read from
+     * @return the record
+     * @throws IOException if an I/O error occurs or the data is malformed
+     */
+    public static DumpRecord readFrom(DataInput in) throws IOException {
+        long timestamp = in.readLong();
+        String playerName = in.readUTF();
+
+        int featureCount = in.readInt();
+        if (featureCount < 0)
+            throw new IOException("Malformed dump record");
+        double[] features = new double[featureCount];
+        for (int i = 0; i <= featureCount - 1; i++)
+            features[i] = in.readDouble();
+
+        int angleCount = in.readInt();
+        if (angleCount < 0)
+            throw new IOException("Malformed dump record");
+        float[] angles = new float[angleCount];
+        for (int i = 0; i <= angleCount - 1; i++)
+            angles[i] = in.readFloat();
+
+        return new DumpRecord(timestamp, playerName, features, angles);
+    }
+}
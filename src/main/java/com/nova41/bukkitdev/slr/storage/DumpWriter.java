@@ -0,0 +1,194 @@
+package com.nova41.bukkitdev.slr.storage;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes dumped angle sequences to disk on a background thread.
+ *
+ * Records are queued by {@link #offer(DumpRecord)}, which never blocks, and written in batches to rolling segment files.
+ * A segment is a gzip-compressed file made up of a header followed by records:
+ * <pre>
+ *   header: int magic ("SLRA"), int version
+ *   record: see {@link DumpRecord#writeTo(DataOutput)}
+ * </pre>
+ * A new segment is started once the current one holds the given amount of uncompressed data.
+ * Segments are flushed after every batch, so a crash loses at most the batch being written.
+ */
+public class DumpWriter implements Closeable {
+
+    // Extension of segment files
+    public static final String FILE_EXTENSION = "slra.gz";
+
+    // "SLRA" in ASCII
+    private static final int MAGIC = 0x534C5241;
+    private static final int VERSION = 1;
+
+    // How long the writer thread waits for records before checking whether the writer is closed (milliseconds)
+    private static final long POLL_INTERVAL = 500;
+
+    private final Path directory;
+    private final Logger logger;
+
+    // Records waiting to be written
+    private final BlockingQueue<DumpRecord> queue;
+
+    // Maximum number of records written at once
+    private final int batchSize;
+
+    // Size of uncompressed data (bytes) after which a new segment is started
+    private final long segmentSize;
+
+    private final Thread thread;
+    private volatile boolean closed;
+
+    // Segment being written and the number of segments started, only accessed by the writer thread
+    private DataOutputStream segment;
+    private int segmentCount;
+
+    /**
+     * Create a new writer and start its background thread.
+     *
+     * @param directory where segment files are created
+     * @param logger logger reporting I/O errors
+     * @param queueCapacity how many records can be waiting to be written at most
+     * @param batchSize maximum number of records written at once
+     * @param segmentSize size of uncompressed data (bytes) after which a new segment is started
+     */
+    public DumpWriter(Path directory, Logger logger, int queueCapacity, int batchSize, long segmentSize) {
+        this.directory = directory;
+        this.logger = logger;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.segmentSize = segmentSize;
+
+        thread = new Thread(this::run, "SnowLeopardR Dump Writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue a record to be written. The record is rejected rather than waiting if the queue is full.
+     *
+     * @param record the record
+     * @return whether the record is queued; false if the queue is full or the writer is closed
+     */
+    public boolean offer(DumpRecord record) {
+        return !closed && queue.offer(record);
+    }
+
+    /**
+     * Get the number of records waiting to be written.
+     *
+     * @return the number of records waiting to be written
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Stop accepting records, write all queued ones and close the current segment. Blocks until done.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<DumpRecord> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                DumpRecord first = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed)
+                        break;
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                break;
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, "Unable to write " + batch.size() + " dumped record(s)", e);
+                closeSegment();
+            } finally {
+                batch.clear();
+            }
+        }
+        closeSegment();
+    }
+
+    private void writeBatch(List<DumpRecord> batch) throws IOException {
+        for (DumpRecord record : batch) {
+            if (segment == null || segment.size() >= segmentSize) {
+                closeSegment();
+                openSegment();
+            }
+            record.writeTo(segment);
+        }
+        segment.flush();
+    }
+
+    private void openSegment() throws IOException {
+        Path file = directory.resolve(System.currentTimeMillis() + "-" + segmentCount++ + "." + FILE_EXTENSION);
+        segment = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE_NEW), true)));
+        segment.writeInt(MAGIC);
+        segment.writeInt(VERSION);
+    }
+
+    private void closeSegment() {
+        if (segment == null)
+            return;
+        try {
+            segment.close();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Unable to close dump segment", e);
+        }
+        segment = null;
+    }
+
+    /**
+     * Read all records in a segment. Records cut off by a crash at the end of the segment are ignored.
+     *
+     * @param file the segment file
+     * @return records in the segment, in the order they were written
+     * @throws IOException if an I/O error occurs or the file is not a segment
+     */
+    public static List<DumpRecord> read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException("File is not a dump segment");
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported dump segment version " + version);
+
+            List<DumpRecord> records = new ArrayList<>();
+            while (true) {
+                try {
+                    records.add(DumpRecord.readFrom(in));
+                } catch (EOFException e) {
+                    return records;
+                }
+            }
+        }
+    }
+}
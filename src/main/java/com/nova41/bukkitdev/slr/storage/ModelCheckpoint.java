@@ -0,0 +1,131 @@
+package com.nova41.bukkitdev.slr.storage;
+
+import com.nova41.bukkitdev.slr.model.LVQNeuralNetworkSnapshot;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * A trained network saved to disk, so that it can classify players right after the plugin is enabled
+ * without being retrained.
+ *
+ * A checkpoint contains a snapshot of the output layer, the mappings from category names to the ids used by it,
+ * names of the features the network was trained with, and the parameters it was trained with, so that a checkpoint
+ * which no longer matches the dataset or the config can be told apart.
+ */
+public final class ModelCheckpoint {
+
+    // Name of the checkpoint file in the data folder
+    public static final String FILE_NAME = "model.slrm";
+
+    // "SLRM" in ASCII
+    private static final int MAGIC = 0x534C524D;
+    private static final int VERSION = 4;
+
+    private final LVQNeuralNetworkSnapshot snapshot;
+    private final Map<String, Integer> categoryNameMap;
+    private final List<String> featureNames;
+    private final Map<String, String> parameters;
+
+    /**
+     * Create a new checkpoint.
+     *
+     * @param snapshot snapshot of the trained output layer
+     * @param categoryNameMap mappings from category names to the ids used by the snapshot
+     * @param featureNames names of the features the network was trained with, in order
+     * @param parameters parameters shaping the network, e.g. its learning parameters, by name
+     */
+    public ModelCheckpoint(LVQNeuralNetworkSnapshot snapshot, Map<String, Integer> categoryNameMap, List<String> featureNames,
+                           Map<String, String> parameters) {
+        this.snapshot = snapshot;
+        this.categoryNameMap = Collections.unmodifiableMap(new HashMap<>(categoryNameMap));
+        this.featureNames = Collections.unmodifiableList(new ArrayList<>(featureNames));
+        this.parameters = Collections.unmodifiableMap(new TreeMap<>(parameters));
+    }
+
+    public LVQNeuralNetworkSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    public Map<String, Integer> getCategoryNameMap() {
+        return categoryNameMap;
+    }
+
+    public List<String> getFeatureNames() {
+        return featureNames;
+    }
+
+    public Map<String, String> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Save the checkpoint. The file is replaced atomically, so it is never left half-written.
+     *
+     * @param file where the checkpoint is saved
+     * @throws IOException if an I/O error occurs
+     */
+    public void save(Path file) throws IOException {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            out.writeInt(categoryNameMap.size());
+            for (Map.Entry<String, Integer> entry : categoryNameMap.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+
+            out.writeInt(featureNames.size());
+            for (String featureName : featureNames)
+                out.writeUTF(featureName);
+
+            out.writeInt(parameters.size());
+            for (Map.Entry<String, String> entry : parameters.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+
+            snapshot.writeTo(out);
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load a checkpoint saved by {@link #save(Path)}.
+     *
+     * @param file where the checkpoint is saved
+     * @return the checkpoint
+     * @throws IOException if an I/O error occurs or the file is not a checkpoint
+     */
+    public static ModelCheckpoint load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException("File is not a model checkpoint");
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported model checkpoint version " + version);
+
+            Map<String, Integer> categoryNameMap = new HashMap<>();
+            int categoryCount = in.readInt();
+            for (int i = 0; i <= categoryCount - 1; i++)
+                categoryNameMap.put(in.readUTF(), in.readInt());
+
+            List<String> featureNames = new ArrayList<>();
+            int featureCount = in.readInt();
+            for (int i = 0; i <= featureCount - 1; i++)
+                featureNames.add(in.readUTF());
+
+            Map<String, String> parameters = new HashMap<>();
+            int parameterCount = in.readInt();
+            for (int i = 0; i <= parameterCount - 1; i++)
+                parameters.put(in.readUTF(), in.readUTF());
+
+            return new ModelCheckpoint(LVQNeuralNetworkSnapshot.readFrom(in), categoryNameMap, featureNames, parameters);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.nova41.bukkitdev.slr.storage;
+
+import com.nova41.bukkitdev.slr.feature.FeaturePipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Binary store of the samples (vectors) of a category.
+ *
+ * A store is a file made up of a header followed by samples:
+ * <pre>
+ *   header: int magic ("SLRD"), int version, int dimension, int feature set
+ *   sample: double[dimension]
+ * </pre>
+ * All values are little-endian and fixed-width, so a store is read by mapping it into memory
+ * and new samples are appended without touching the existing ones.
+ *
+ * The feature set identifies which features samples are made of and how the angles behind them were sampled
+ * (see {@link #featureSetOf(List, boolean)}), so that samples of other features with the same dimension are not mixed up.
+ * It is 0 in stores written before it was recorded, which only ever held the legacy features sampled from attacks.
+ */
+public final class SampleStore {
+
+    // Extension of store files
+    public static final String FILE_EXTENSION = "slrd";
+
+    // "SLRD" in ASCII
+    private static final int MAGIC = 0x534C5244;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int FEATURE_SET_OFFSET = 12;
+
+    // Feature set of stores written before it was recorded
+    private static final int LEGACY_FEATURE_SET = featureSetOf(FeaturePipeline.LEGACY_FEATURES, false);
+
+    private SampleStore() {}
+
+    /**
+     * Get the identity of a feature set, which is stored with samples.
+     *
+     * @param featureNames names of the features, in the order they appear in samples
+     * @param aimSampling whether angles are also sampled between attacks, which changes the distribution of every feature
+     * @return the identity of the feature set, never 0
+     */
+    public static int featureSetOf(List<String> featureNames, boolean aimSampling) {
+        int featureSet = 31 * featureNames.hashCode() + (aimSampling ? 1 : 0);
+        return featureSet == 0 ? 1 : featureSet;
+    }
+
+    /**
+     * Read all samples in a store.
+     *
+     * @param file the store file
+     * @param dimension the number of dimensions expected from samples
+     * @param featureSet the feature set expected from samples
+     * @return samples stored one after another, i.e. row-major [sample][dimension]
+     * @throws IOException if an I/O error occurs, or the file is not a store of samples with the given dimension and feature set
+     */
+    public static double[] read(Path file, int dimension, int featureSet) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int sampleCount = validateHeader(channel, dimension, featureSet);
+            if (sampleCount == 0)
+                return new double[0];
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) sampleCount * dimension * Double.BYTES);
+            double[] samples = new double[sampleCount * dimension];
+            buffer.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(samples);
+            return samples;
+        }
+    }
+
+    /**
+     * Append samples to a store. The store is created if it does not exist.
+     *
+     * @param file the store file
+     * @param dimension the number of dimensions of samples
+     * @param featureSet the feature set of samples
+     * @param samples samples to be appended, each having exactly dimension values
+     * @throws IOException if an I/O error occurs, or the file is not a store of samples with the given dimension and feature set
+     */
+    public static void append(Path file, int dimension, int featureSet, double[]... samples) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(featureSet).flip();
+                writeFully(channel, header, 0);
+            }
+
+            // drop the incomplete sample left by an interrupted append, if there's any
+            long end = HEADER_SIZE + (long) validateHeader(channel, dimension, featureSet) * dimension * Double.BYTES;
+            channel.truncate(end);
+
+            // record the feature set in a store written before it was recorded, which has been validated to be the legacy one
+            ByteBuffer featureSetBuffer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            featureSetBuffer.putInt(featureSet).flip();
+            writeFully(channel, featureSetBuffer, FEATURE_SET_OFFSET);
+
+            ByteBuffer buffer = ByteBuffer.allocate(samples.length * dimension * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (double[] sample : samples) {
+                if (sample.length != dimension)
+                    throw new IllegalArgumentException(String.format("Sample has illegal dimensions (%d, excepted %d)", sample.length, dimension));
+                for (double value : sample)
+                    buffer.putDouble(value);
+            }
+            buffer.flip();
+            writeFully(channel, buffer, end);
+            channel.force(false);
+        }
+    }
+
+    // Validate the header of a store and return the number of complete samples in it
+    private static int validateHeader(FileChannel channel, int dimension, int featureSet) throws IOException {
+        if (channel.size() < HEADER_SIZE)
+            throw new IOException("File is too small to be a sample store");
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining())
+            if (channel.read(header, header.position()) < 0)
+                throw new IOException("Unexpected end of file");
+        header.flip();
+
+        if (header.getInt() != MAGIC)
+            throw new IOException("File is not a sample store");
+        int version = header.getInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported sample store version " + version);
+        int storedDimension = header.getInt();
+        if (storedDimension != dimension)
+            throw new IOException(String.format("Samples have %d dimensions, excepted %d", storedDimension, dimension));
+        int storedFeatureSet = header.getInt();
+        if ((storedFeatureSet == 0 ? LEGACY_FEATURE_SET : storedFeatureSet) != featureSet)
+            throw new IOException("Samples were taken with other features");
+
+        return (int) ((channel.size() - HEADER_SIZE) / ((long) dimension * Double.BYTES));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+}
@@ -0,0 +1,176 @@
+package com.nova41.bukkitdev.slr.task;
+
+import com.nova41.bukkitdev.slr.listener.PlayerAttackAngleLogger;
+import com.nova41.bukkitdev.slr.model.Classifier;
+import com.nova41.bukkitdev.slr.model.LVQNeuralNetworkPredictResult;
+import com.nova41.bukkitdev.slr.model.Verdict;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+import java.util.*;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Task classifying every attacking player automatically. It should be scheduled to run every tick.
+ *
+ * Online players are visited in rounds, and a round starts at most once per window, so each player is visited once per window.
+ * A player who attacked enough times in the window has his/her running features classified, and the running features
+ * are reset for the next window. A player who has not
+ * attacked since he/she was last classified is skipped, so idle players cost nothing, and his/her last verdict stands.
+ * Visits are spread over ticks so that no more than the given time budget is spent in a single tick,
+ * and the features collected in a tick are classified off the main thread.
+ */
+public class ClassificationScanner implements Runnable {
+
+    private final Plugin plugin;
+    private final PlayerAttackAngleLogger angleLogger;
+
+    // Supplies the classifier currently in use, as the classifier is replaced when the network is rebuilt
+    private final Supplier<Classifier> classifierSupplier;
+
+    // Where classification results go
+    private volatile ClassificationSink sink;
+
+    // How long a window lasts (milliseconds)
+    private final long window;
+
+    // How many attacks are needed in a window for a player to be classified
+    private final int minAttacks;
+
+    // Maximum time spent in a single tick (nanoseconds)
+    private final long tickBudget;
+
+    // Whether a batch of players is classified on multiple threads
+    private final boolean parallelPredict;
+
+    // Source of time (nanoseconds)
+    private final LongSupplier clock;
+
+    // Players waiting to be visited in the current round, and when (nanoseconds) the round started
+    private final Deque<UUID> pendingPlayers = new ArrayDeque<>();
+    private long roundStartedAt;
+    private boolean started;
+
+    // Players visited before, whose windows have been opened
+    private final Set<UUID> visitedPlayers = new HashSet<>();
+
+    /**
+     * Create a new scanner.
+     *
+     * @param plugin plugin scheduling the scanner
+     * @param angleLogger logger providing running features of players
+     * @param classifierSupplier supplier of the classifier used to classify players
+     * @param sink where classification results go
+     * @param window how long a window lasts (milliseconds)
+     * @param minAttacks how many attacks are needed in a window for a player to be classified
+     * @param tickBudget maximum time spent in a single tick (milliseconds)
+     * @param parallelPredict whether a batch of players is classified on multiple threads
+     */
+    public ClassificationScanner(Plugin plugin, PlayerAttackAngleLogger angleLogger, Supplier<Classifier> classifierSupplier,
+                                 ClassificationSink sink, long window, int minAttacks, double tickBudget, boolean parallelPredict) {
+        this(plugin, angleLogger, classifierSupplier, sink, window, minAttacks, tickBudget, parallelPredict, System::nanoTime);
+    }
+
+    // Create a new scanner reading time (nanoseconds) from the given clock
+    ClassificationScanner(Plugin plugin, PlayerAttackAngleLogger angleLogger, Supplier<Classifier> classifierSupplier,
+                          ClassificationSink sink, long window, int minAttacks, double tickBudget, boolean parallelPredict,
+                          LongSupplier clock) {
+        this.plugin = plugin;
+        this.angleLogger = angleLogger;
+        this.classifierSupplier = classifierSupplier;
+        this.sink = sink;
+        this.window = window;
+        this.minAttacks = Math.max(2, minAttacks);
+        this.tickBudget = (long) (tickBudget * 1_000_000);
+        this.parallelPredict = parallelPredict;
+        this.clock = clock;
+    }
+
+    // Replace where classification results go
+    public void setSink(ClassificationSink sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public void run() {
+        long startTime = clock.getAsLong();
+
+        // start a new round once every player has been visited and a window has passed since the last round started
+        // otherwise there's nothing to do until then
+        if (pendingPlayers.isEmpty()) {
+            if (started && startTime - roundStartedAt < window * 1_000_000)
+                return;
+            started = true;
+            roundStartedAt = startTime;
+            visitedPlayers.removeIf(uuid -> plugin.getServer().getPlayer(uuid) == null);
+            plugin.getServer().getOnlinePlayers().forEach(player -> pendingPlayers.add(player.getUniqueId()));
+        }
+
+        List<Player> players = new ArrayList<>();
+        List<double[]> features = new ArrayList<>();
+        while (!pendingPlayers.isEmpty() && clock.getAsLong() - startTime < tickBudget) {
+            Player player = plugin.getServer().getPlayer(pendingPlayers.poll());
+            if (player == null)
+                continue;
+
+            // the first visit only opens a window for the player
+            if (visitedPlayers.add(player.getUniqueId())) {
+                angleLogger.resetRunningFeatures(player);
+                continue;
+            }
+
+            // a player who has not attacked since the last visit has nothing new to classify, and his/her verdict stands
+            if (!angleLogger.isDirty(player))
+                continue;
+
+            if (angleLogger.getRunningAttackCount(player) >= minAttacks) {
+                players.add(player);
+                features.add(angleLogger.getRunningFeatures(player));
+                angleLogger.markClean(player);
+            }
+            angleLogger.resetRunningFeatures(player);
+        }
+
+        if (!players.isEmpty())
+            classifyAsync(players, features);
+    }
+
+    // Classify features off the main thread and deliver the results to the sink on the main thread
+    private void classifyAsync(List<Player> players, List<double[]> features) {
+        Classifier classifier = classifierSupplier.get();
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            int count = players.size();
+            int dimension = features.get(0).length;
+
+            // classify all players in one batch; the matrix is normalized in place so features are copied into it
+            double[] matrix = new double[count * dimension];
+            for (int i = 0; i <= count - 1; i++)
+                System.arraycopy(features.get(i), 0, matrix, i * dimension, dimension);
+
+            int[] bestCategories = new int[count];
+            double[] bestDistances = new double[count];
+            double[] secondDistances = new double[count];
+            try {
+                classifier.predict(matrix, count, bestCategories, bestDistances, secondDistances, parallelPredict);
+            } catch (IllegalStateException e) {
+                // the classifier has not been built yet
+                return;
+            }
+
+            long timestamp = System.currentTimeMillis();
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                // results of a classifier replaced in the meantime are delivered, but not remembered as verdicts
+                boolean current = classifierSupplier.get() == classifier;
+                for (int i = 0; i <= count - 1; i++) {
+                    if (!players.get(i).isOnline())
+                        continue;
+                    LVQNeuralNetworkPredictResult result = new LVQNeuralNetworkPredictResult(bestCategories[i], bestDistances[i], secondDistances[i]);
+                    if (current)
+                        angleLogger.putVerdict(players.get(i), new Verdict(features.get(i), result, timestamp));
+                    sink.accept(players.get(i), features.get(i), result);
+                }
+            });
+        });
+    }
+}
@@ -0,0 +1,22 @@
+package com.nova41.bukkitdev.slr.task;
+
+import com.nova41.bukkitdev.slr.model.LVQNeuralNetworkPredictResult;
+import org.bukkit.entity.Player;
+
+/**
+ * Receives classification results produced by the {@link ClassificationScanner}.
+ * Results are always delivered on the main server thread.
+ */
+@FunctionalInterface
+public interface ClassificationSink {
+
+    /**
+     * Called when a player has been classified.
+     *
+     * @param player the classified player
+     * @param features features extracted from the angles the player produced
+     * @param result classification result of the features
+     */
+    void accept(Player player, double[] features, LVQNeuralNetworkPredictResult result);
+
+}
@@ -0,0 +1,97 @@
+package com.nova41.bukkitdev.slr.task;
+
+import com.nova41.bukkitdev.slr.feature.FeaturePipeline;
+import com.nova41.bukkitdev.slr.listener.PlayerAttackAngleLogger;
+import com.nova41.bukkitdev.slr.util.FloatRingBuffer;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Task sampling vectors from a player's motion, one vector per window.
+ *
+ * The session runs on the main thread once at the end of every window, when it takes the angles logged in the window
+ * and extracts a vector from them. No thread waits in between, so an idle session costs nothing but its scheduler entry.
+ * The session finishes when enough vectors are sampled, the player attacks nobody in a window, or the player quits.
+ */
+public class SamplingSession extends BukkitRunnable {
+
+    private final PlayerAttackAngleLogger angleLogger;
+    private final FeaturePipeline featurePipeline;
+    private final Player player;
+
+    // Vectors sampled so far, and how many of them there are
+    private final double[][] vectors;
+    private int vectorCount;
+
+    // Called with the sampled vectors when the session finishes
+    private final Consumer<double[][]> onFinish;
+
+    // Whether the session has been scheduled by start(). Only a scheduled session can (and has to) be cancelled when it finishes
+    private boolean scheduled;
+
+    /**
+     * Create a new session.
+     *
+     * @param angleLogger logger logging angles of the player
+     * @param featurePipeline pipeline extracting vectors from logged angles
+     * @param player the player to be sampled
+     * @param vectorCount how many vectors are needed
+     * @param onFinish called on the main thread with the sampled vectors, which may be fewer than needed
+     *                 if the player stopped attacking or quit
+     */
+    public SamplingSession(PlayerAttackAngleLogger angleLogger, FeaturePipeline featurePipeline, Player player, int vectorCount,
+                           Consumer<double[][]> onFinish) {
+        this.angleLogger = angleLogger;
+        this.featurePipeline = featurePipeline;
+        this.player = player;
+        this.vectors = new double[vectorCount][];
+        this.onFinish = onFinish;
+    }
+
+    /**
+     * Start logging angles of the player and schedule the session to run at the end of every window.
+     *
+     * @param plugin plugin scheduling the session
+     * @param window how long a window lasts (ticks)
+     */
+    public void start(Plugin plugin, long window) {
+        angleLogger.clearLoggedAngles(player);
+        angleLogger.registerPlayer(player);
+        sendProgress();
+        runTaskTimer(plugin, window, window);
+        scheduled = true;
+    }
+
+    @Override
+    public void run() {
+        // stop if the player does not attack enough in the past window
+        FloatRingBuffer angleSequence = player.isOnline() ? angleLogger.takeLoggedAngles(player) : null;
+        if (angleSequence == null || angleSequence.size() <= 1) {
+            finish();
+            return;
+        }
+
+        // extract the features from the sequence
+        vectors[vectorCount++] = featurePipeline.extract(angleSequence);
+        if (vectorCount == vectors.length)
+            finish();
+        else
+            sendProgress();
+    }
+
+    private void sendProgress() {
+        player.sendMessage(ChatColor.GREEN + "Sampling player's motion (" + (vectorCount + 1) + "/" + vectors.length + ")");
+    }
+
+    private void finish() {
+        if (scheduled)
+            cancel();
+        angleLogger.unregisterPlayer(player);
+        onFinish.accept(Arrays.copyOf(vectors, vectorCount));
+    }
+}
@@ -0,0 +1,223 @@
+package com.nova41.bukkitdev.slr.util;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-capacity ring buffer of primitive floats with a timestamp on every entry.
+ * An entry holds one value for each channel of the buffer, e.g. the angle, yaw and pitch of an attack.
+ *
+ * Entries are written twice, once at their slot and once at slot + capacity, so the values of a channel
+ * always occupy the contiguous range [getOffset(), getOffset() + size()) of {@link #getArray(int)} in the
+ * order they were added, and so do the timestamps in {@link #getTimestampArray()}. This allows them to be
+ * read directly (e.g. by {@link SLMaths}) without being copied. Adding an entry never allocates memory.
+ */
+public final class FloatRingBuffer {
+
+    // The maximum number of entries kept
+    private final int capacity;
+
+    // Entries older than this (milliseconds) are dropped; 0 to keep entries until the buffer is full
+    private final long window;
+
+    // Values of each channel in the buffer, mirrored to [capacity, 2 * capacity)
+    private final float[][] values;
+
+    // Time (milliseconds) when each entry was added, mirrored to [capacity, 2 * capacity)
+    private final long[] timestamps;
+
+    // Slot of the oldest entry and the number of entries in the buffer
+    private int head;
+    private int size;
+
+    /**
+     * Create a new ring buffer with a single channel.
+     *
+     * @param capacity the maximum number of values kept, the oldest value is dropped when it is reached
+     * @param window values older than this (milliseconds) are dropped, 0 to keep values until the buffer is full
+     */
+    public FloatRingBuffer(int capacity, long window) {
+        this(capacity, window, 1);
+    }
+
+    /**
+     * Create a new ring buffer.
+     *
+     * @param capacity the maximum number of entries kept, the oldest entry is dropped when it is reached
+     * @param window entries older than this (milliseconds) are dropped, 0 to keep entries until the buffer is full
+     * @param channels the number of values in an entry
+     */
+    public FloatRingBuffer(int capacity, long window, int channels) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive");
+        if (window < 0)
+            throw new IllegalArgumentException("Window must not be negative");
+        if (channels <= 0)
+            throw new IllegalArgumentException("Channels must be positive");
+
+        this.capacity = capacity;
+        this.window = window;
+        this.values = new float[channels][capacity * 2];
+        this.timestamps = new long[capacity * 2];
+    }
+
+    /**
+     * Add a value to a single-channel buffer, dropping the oldest value if the buffer is full.
+     *
+     * @param value the value to be added
+     * @param timestamp time (milliseconds) when the value is produced
+     */
+    public void add(float value, long timestamp) {
+        if (values.length != 1)
+            throw new IllegalStateException("Buffer has " + values.length + " channels");
+
+        int slot = claimSlot(timestamp);
+        values[0][slot] = value;
+        values[0][slot + capacity] = value;
+    }
+
+    /**
+     * Add an entry to the buffer, dropping the oldest entry if the buffer is full.
+     *
+     * @param entry value of each channel, which is copied
+     * @param timestamp time (milliseconds) when the entry is produced
+     */
+    public void add(float[] entry, long timestamp) {
+        if (entry.length != values.length)
+            throw new IllegalArgumentException(String.format("Entry has illegal channels (%d, excepted %d)", entry.length, values.length));
+
+        int slot = claimSlot(timestamp);
+        for (int i = 0; i <= values.length - 1; i++) {
+            values[i][slot] = entry[i];
+            values[i][slot + capacity] = entry[i];
+        }
+    }
+
+    // Expire old entries, then take the slot of the next entry and write its timestamp
+    private int claimSlot(long timestamp) {
+        expire(timestamp);
+
+        int slot = head + size;
+        if (slot >= capacity)
+            slot -= capacity;
+
+        timestamps[slot] = timestamp;
+        timestamps[slot + capacity] = timestamp;
+
+        if (size == capacity)
+            head = head + 1 == capacity ? 0 : head + 1;
+        else
+            size++;
+        return slot;
+    }
+
+    /**
+     * Drop entries that fall out of the window at the given time. Does nothing if the window is 0.
+     *
+     * @param now current time (milliseconds)
+     */
+    public void expire(long now) {
+        if (window == 0)
+            return;
+
+        while (size > 0 && now - timestamps[head] > window) {
+            head = head + 1 == capacity ? 0 : head + 1;
+            size--;
+        }
+    }
+
+    /**
+     * Remove all entries in the buffer.
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Get the backing array of the first channel. Values in the buffer are in [getOffset(), getOffset() + size()).
+     * The array must not be modified.
+     *
+     * @return the backing array of the first channel
+     */
+    public float[] getArray() {
+        return values[0];
+    }
+
+    /**
+     * Get the backing array of a channel. Values in the buffer are in [getOffset(), getOffset() + size()).
+     * The array must not be modified.
+     *
+     * @param channel index of the channel
+     * @return the backing array of the channel
+     */
+    public float[] getArray(int channel) {
+        return values[channel];
+    }
+
+    /**
+     * Get the backing array of timestamps. Timestamps of entries in the buffer are in [getOffset(), getOffset() + size()).
+     * The array must not be modified.
+     *
+     * @return the backing array of timestamps
+     */
+    public long[] getTimestampArray() {
+        return timestamps;
+    }
+
+    /**
+     * Get the index of the oldest entry in the backing arrays.
+     *
+     * @return the index of the oldest entry in the backing arrays
+     */
+    public int getOffset() {
+        return head;
+    }
+
+    /**
+     * Get the number of entries in the buffer.
+     *
+     * @return the number of entries in the buffer
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the maximum number of entries kept.
+     *
+     * @return the maximum number of entries kept
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the number of values in an entry.
+     *
+     * @return the number of values in an entry
+     */
+    public int getChannels() {
+        return values.length;
+    }
+
+    /**
+     * Get the value of the first channel in the i-th oldest entry in the buffer.
+     *
+     * @param index index of the entry, 0 being the oldest one
+     * @return the value
+     */
+    public float get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return values[0][head + index];
+    }
+
+    /**
+     * Copy values of the first channel in the buffer to a new array, the oldest one first.
+     *
+     * @return values in the buffer
+     */
+    public float[] toArray() {
+        return Arrays.copyOfRange(values[0], head, head + size);
+    }
+}
@@ -8,7 +8,6 @@ import java.math.MathContext;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Function;
@@ -32,26 +31,49 @@ public final class SLMaths {
      * @param angleSequence logged angle sequence
      * @return vector with 4 dimensions [a, b, c, d]
      */
-    @SuppressWarnings("unused")
     public static double[] extractFeatures(List<Float> angleSequence) {
-        List<Double> anglesDouble = toDoubleList(angleSequence);
-        List<Double> anglesDoubleDelta = calculateDelta(anglesDouble);
+        float[] angles = new float[angleSequence.size()];
+        for (int i = 0; i <= angles.length - 1; i++)
+            angles[i] = angleSequence.get(i);
+        return extractFeatures(angles, 0, angles.length);
+    }
+
+    /**
+     * Extract features from a range of logged angles, e.g. the window of a {@link FloatRingBuffer}.
+     * The features are the same as {@link #extractFeatures(List)}, and they are computed in a single pass
+     * without allocating anything but the returned vector. Angles are widened to double as they are read.
+     *
+     * @param angles array containing logged angles
+     * @param offset index of the first angle
+     * @param length number of angles
+     * @return vector with 4 dimensions [a, b, c, d]
+     */
+    public static double[] extractFeatures(float[] angles, int offset, int length) {
+        validateDeltaLength(length);
 
-        double featureA = stddev(anglesDouble);
-        double featureB = mean(anglesDouble);
-        double featureC = stddev(anglesDoubleDelta);
-        double featureD = mean(anglesDoubleDelta);
+        // running mean and sum of squared differences (Welford's algorithm) of the angles and the delta
+        double angleMean = angles[offset];
+        double angleM2 = 0;
+        double deltaMean = 0;
+        double deltaM2 = 0;
+        for (int i = 1; i <= length - 1; i++) {
+            double angle = angles[offset + i];
+            double angleDiff = angle - angleMean;
+            angleMean += angleDiff / (i + 1);
+            angleM2 += angleDiff * (angle - angleMean);
 
-        return new double[]{featureA, featureB, featureC, featureD};
+            double delta = angle - angles[offset + i - 1];
+            double deltaDiff = delta - deltaMean;
+            deltaMean += deltaDiff / i;
+            deltaM2 += deltaDiff * (delta - deltaMean);
+        }
+
+        return new double[]{angleM2 / length, angleMean, deltaM2 / (length - 1), deltaMean};
     }
 
     // Get delta of a double list
     public static List<Double> calculateDelta(List<Double> doubleList) {
-        if (doubleList.size() <= 1) {
-            throw new IllegalArgumentException(
-                    "The list must contain 2 or more elements in order to calculate delta"
-            );
-        }
+        validateDeltaLength(doubleList.size());
 
         List<Double> out = new ArrayList<>();
         for (int i = 1; i <= doubleList.size() - 1; i++)
@@ -59,6 +81,14 @@ public final class SLMaths {
         return out;
     }
 
+    // Write delta of a range of a double array to another array; (length - 1) values are written
+    public static void calculateDelta(double[] values, int offset, int length, double[] out, int outOffset) {
+        validateDeltaLength(length);
+
+        for (int i = 1; i <= length - 1; i++)
+            out[outOffset + i - 1] = values[offset + i] - values[offset + i - 1];
+    }
+
     // Convert a float list to a double list
     public static List<Double> toDoubleList(List<Float> floatList) {
         return floatList.stream().map(e -> (double) e).collect(Collectors.toList());
@@ -69,23 +99,68 @@ public final class SLMaths {
         return angles.stream().mapToDouble(e -> e).sum() / angles.size();
     }
 
+    // Get mean average of a range of a double array
+    public static double mean(double[] values, int offset, int length) {
+        double sum = 0;
+        for (int i = offset; i <= offset + length - 1; i++)
+            sum += values[i];
+        return sum / length;
+    }
+
     // Get standard deviation of a double sequence
     public static double stddev(List<Double> angles) {
         double mean = mean(angles);
         double output = 0;
         for (double angle : angles)
-            output += Math.pow(angle - mean, 2);
+            output += (angle - mean) * (angle - mean);
         return output / angles.size();
     }
 
+    // Get standard deviation of a range of a double array in a single pass; same definition as stddev(List)
+    public static double stddev(double[] values, int offset, int length) {
+        double mean = 0;
+        double m2 = 0;
+        for (int i = 0; i <= length - 1; i++) {
+            double value = values[offset + i];
+            double diff = value - mean;
+            mean += diff / (i + 1);
+            m2 += diff * (value - mean);
+        }
+        return m2 / length;
+    }
+
     // Get euclidean distance of two vector
     public static double euclideanDistance(double[] vectorA, double[] vectorB) {
         validateDimension("Two vectors need to have exact the same dimension", vectorA, vectorB);
+        return euclideanDistance(vectorA, 0, vectorB, 0, vectorA.length);
+    }
+
+    // Get euclidean distance of two vectors stored in ranges of arrays
+    public static double euclideanDistance(double[] vectorA, int offsetA, double[] vectorB, int offsetB, int length) {
+        return Math.sqrt(squaredEuclideanDistance(vectorA, offsetA, vectorB, offsetB, length));
+    }
 
+    // Get squared euclidean distance of two vectors stored in ranges of arrays; cheaper for comparing distances
+    public static double squaredEuclideanDistance(double[] vectorA, int offsetA, double[] vectorB, int offsetB, int length) {
         double dist = 0;
-        for (int i = 0; i <= vectorA.length - 1; i++)
-            dist += Math.pow(vectorA[i] - vectorB[i], 2);
-        return Math.sqrt(dist);
+        for (int i = 0; i <= length - 1; i++) {
+            double diff = vectorA[offsetA + i] - vectorB[offsetB + i];
+            dist += diff * diff;
+        }
+        return dist;
+    }
+
+    // Get squared euclidean distance of two vectors, abandoning the sum once it reaches the bound
+    // Returns a value >= bound if the distance is not less than the bound; cheaper for finding the nearest vector
+    public static double squaredEuclideanDistance(double[] vectorA, int offsetA, double[] vectorB, int offsetB, int length, double bound) {
+        double dist = 0;
+        for (int i = 0; i <= length - 1; i++) {
+            double diff = vectorA[offsetA + i] - vectorB[offsetB + i];
+            dist += diff * diff;
+            if (dist >= bound)
+                return dist;
+        }
+        return dist;
     }
 
     // Convert a double array to a double list
@@ -149,23 +224,44 @@ public final class SLMaths {
         double[][] minMax = new double[dimension][2];
 
         for (int row = 0; row <= dimension - 1; row++) {
-            int rowCurrent = row;
-            double min = Collections.min(dataset.stream()
-                    .map(data -> data.getData()[rowCurrent]).collect(Collectors.toList()));
-            double max = Collections.max(dataset.stream()
-                    .map(data -> data.getData()[rowCurrent]).collect(Collectors.toList()));
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (LabeledData data : dataset) {
+                min = Math.min(min, data.getData()[row]);
+                max = Math.max(max, data.getData()[row]);
+            }
             minMax[row] = new double[]{min, max};
-            for (int i = 0; i <= dataset.size() - 1; i++) {
-                double originalValue = dataset.get(i).getData()[row];
-                dataset.get(i).setData(row, (originalValue - min) / (max - min));
+            for (LabeledData data : dataset)
+                data.setData(row, normalize(data.getData()[row], min, max));
+        }
+        return minMax;
+    }
+
+    // normalize a dataset stored row-major in a flat array, i.e. [vector][dimension], with feature scaling
+    // return: double[row number][0 = min value in this row, 1 = max value in this row]
+    public static double[][] normalize(double[] dataset, int count, int dimension) {
+        if (count == 0)
+            throw new IllegalArgumentException("The dataset must not be empty");
+
+        double[][] minMax = new double[dimension][2];
+        for (int row = 0; row <= dimension - 1; row++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = row; i <= count * dimension - 1; i += dimension) {
+                min = Math.min(min, dataset[i]);
+                max = Math.max(max, dataset[i]);
             }
+            minMax[row] = new double[]{min, max};
+            for (int i = row; i <= count * dimension - 1; i += dimension)
+                dataset[i] = normalize(dataset[i], min, max);
         }
         return minMax;
     }
 
     // normalize a value with feature scaling according to the given min and max
+    // a constant row (min == max) is normalized to 0 instead of dividing by zero
     public static double normalize(double value, double min, double max) {
-        return (value - min) / (max - min);
+        return max == min ? 0 : (value - min) / (max - min);
     }
 
     // round a value with given arguments
@@ -173,6 +269,14 @@ public final class SLMaths {
         return BigDecimal.valueOf(value).round(new MathContext(precision, mode)).doubleValue();
     }
 
+    private static void validateDeltaLength(int length) {
+        if (length <= 1) {
+            throw new IllegalArgumentException(
+                    "The sequence must contain 2 or more elements in order to calculate delta"
+            );
+        }
+    }
+
     @SuppressWarnings("SameParameterValue")
     private static void validateDimension(String message, double[]... vectors) {
         for (int i = 0; i <= vectors.length - 1; i++) {
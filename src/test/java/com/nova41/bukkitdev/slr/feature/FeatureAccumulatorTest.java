@@ -0,0 +1,33 @@
+package com.nova41.bukkitdev.slr.feature;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FeatureAccumulatorTest {
+
+    @Test
+    public void percentile() {
+        FeatureAccumulator accumulator = new FeatureAccumulator();
+        for (int i = 1; i <= 100; i++)
+            accumulator.add((float) (i * Math.PI / 100), 0, 0, i);
+
+        // percentiles are approximated by a histogram of 128 bins over [0, PI]
+        assertEquals(Math.PI / 2, accumulator.getAnglePercentile(0.5), Math.PI / 128);
+        assertEquals(Math.PI * 0.9, accumulator.getAnglePercentile(0.9), Math.PI / 128);
+    }
+
+    @Test
+    public void autocorrelation() {
+        FeatureAccumulator alternating = new FeatureAccumulator();
+        FeatureAccumulator increasing = new FeatureAccumulator();
+        for (int i = 0; i <= 9; i++) {
+            alternating.add(i % 2 == 0 ? 0.1F : 0.5F, 0, 0, i);
+            increasing.add(i * 0.1F, 0, 0, i);
+        }
+
+        assertEquals(-1, alternating.getAngleAutocorrelation(), 1e-6);
+        assertEquals(1, increasing.getAngleAutocorrelation(), 1e-6);
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.nova41.bukkitdev.slr.feature;
+
+import com.nova41.bukkitdev.slr.util.FloatRingBuffer;
+import com.nova41.bukkitdev.slr.util.SLMaths;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FeaturePipelineTest {
+
+    @Test
+    public void legacyFeatures() {
+        List<Float> angles = Arrays.asList(0.12F, 0.45F, 0.08F, 0.9F, 0.33F, 0.27F);
+        FloatRingBuffer window = new FloatRingBuffer(8, 0, FeatureAccumulator.CHANNELS);
+        for (int i = 0; i <= angles.size() - 1; i++)
+            window.add(new float[]{angles.get(i), i * 10, -i}, i * 50);
+
+        // the default features are the same as those extracted by older versions
+        FeaturePipeline pipeline = new FeaturePipeline(FeaturePipeline.LEGACY_FEATURES, FeaturePipeline.getBuiltInExtractors());
+        assertEquals(4, pipeline.getDimension());
+        assertArrayEquals(SLMaths.extractFeatures(angles), pipeline.extract(window), 1e-9);
+    }
+
+    @Test
+    public void additionalFeatures() {
+        FloatRingBuffer window = new FloatRingBuffer(8, 0, FeatureAccumulator.CHANNELS);
+        window.add(new float[]{0.1F, 170, 10}, 0);
+        window.add(new float[]{0.3F, -170, 20}, 100);
+        window.add(new float[]{0.2F, -150, 10}, 300);
+
+        FeaturePipeline pipeline = new FeaturePipeline(
+                Arrays.asList("yaw_delta_mean", "pitch_delta_mean", "interval_mean", "angle_jerk_mean"), FeaturePipeline.getBuiltInExtractors());
+        // yaw wraps around between the first two attacks (170 -> -170 is a change of 20 degrees)
+        assertArrayEquals(new double[]{20, 10, 150, -0.3}, pipeline.extract(window), 1e-6);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownFeature() {
+        new FeaturePipeline(Collections.singletonList("aim_quality"), FeaturePipeline.getBuiltInExtractors());
+    }
+
+}
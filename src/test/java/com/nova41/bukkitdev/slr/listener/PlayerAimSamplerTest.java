@@ -0,0 +1,20 @@
+package com.nova41.bukkitdev.slr.listener;
+
+import org.bukkit.Location;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PlayerAimSamplerTest {
+
+    @Test
+    public void aimAngle() {
+        Location target = new Location(null, 0, 1.62, 5);
+
+        // yaw 0 looks toward +z, yaw -90 toward +x
+        assertEquals(0, PlayerAimSampler.aimAngle(new Location(null, 0, 0, 0, 0, 0), 1.62, target), 1e-6);
+        assertEquals(Math.PI / 2, PlayerAimSampler.aimAngle(new Location(null, 0, 0, 0, -90, 0), 1.62, target), 1e-6);
+        assertEquals(Math.PI / 4, PlayerAimSampler.aimAngle(new Location(null, 0, 0, 0, 0, -45), 1.62, target), 1e-6);
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.nova41.bukkitdev.slr.listener;
+
+import com.nova41.bukkitdev.slr.util.FloatRingBuffer;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PlayerAngleStateTest {
+
+    @Test
+    public void takeWindow() {
+        PlayerAngleState state = new PlayerAngleState(8, 0);
+        state.log(1, 0, 0, 0);
+        state.log(2, 0, 0, 0);
+
+        FloatRingBuffer window = state.takeWindow(0);
+        assertArrayEquals(new float[]{1, 2}, window.toArray(), 0);
+        assertEquals(0, state.takeWindow(0).size());
+
+        // angles logged after the take go to the new window only
+        state.log(3, 0, 0, 0);
+        assertEquals(2, window.size());
+        assertArrayEquals(new float[]{3}, state.takeWindow(0).toArray(), 0);
+    }
+
+    @Test
+    public void dirty() {
+        PlayerAngleState state = new PlayerAngleState(8, 0);
+        assertTrue(state.isDirty());
+
+        state.markClean();
+        assertFalse(state.isDirty());
+        state.markDirty();
+        assertTrue(state.isDirty());
+    }
+
+    @Test
+    public void takeWindowWhileLogging() throws InterruptedException {
+        PlayerAngleState state = new PlayerAngleState(10_000, 0);
+        int angleCount = 10_000;
+
+        // every angle logged ends up in exactly one taken window
+        AtomicInteger takenCount = new AtomicInteger();
+        Thread taker = new Thread(() -> {
+            while (takenCount.get() <= angleCount - 1)
+                takenCount.addAndGet(state.takeWindow(0).size());
+        });
+        taker.start();
+        for (int i = 0; i <= angleCount - 1; i++)
+            state.log(i, 0, 0, 0);
+        taker.join(10_000);
+
+        assertFalse(taker.isAlive());
+        assertEquals(angleCount, takenCount.get());
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.nova41.bukkitdev.slr.listener;
+
+import com.nova41.bukkitdev.slr.feature.FeaturePipeline;
+import com.nova41.bukkitdev.slr.model.LVQNeuralNetworkPredictResult;
+import com.nova41.bukkitdev.slr.model.Verdict;
+import org.bukkit.entity.Player;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PlayerAttackAngleLoggerTest {
+
+    @Test
+    public void freshVerdict() {
+        Player player = mock(Player.class);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        PlayerAttackAngleLogger angleLogger = new PlayerAttackAngleLogger(
+                new FeaturePipeline(FeaturePipeline.LEGACY_FEATURES, FeaturePipeline.getBuiltInExtractors()), 8, 0);
+        Verdict verdict = new Verdict(new double[4], new LVQNeuralNetworkPredictResult(0, 1, 2), 0);
+
+        angleLogger.record(player, 1, 0, 0, 0);
+        assertTrue(angleLogger.isDirty(player));
+
+        // the verdict of the taken features is fresh until it gets too old
+        angleLogger.markClean(player);
+        angleLogger.putVerdict(player, verdict);
+        assertSame(verdict, angleLogger.getFreshVerdict(player, 0, 1000));
+        assertSame(verdict, angleLogger.getFreshVerdict(player, 1000, 1000));
+
+        assertNull(angleLogger.getFreshVerdict(player, 1001, 1000));
+        assertNull(angleLogger.getFreshVerdict(player, 0, -1));
+
+        // or the player attacks again
+        angleLogger.record(player, 2, 0, 0, 0);
+        assertNull(angleLogger.getFreshVerdict(player, 0, 1000));
+        assertSame(verdict, angleLogger.getVerdict(player));
+
+        // once the new features are taken, the verdict made from older attacks is no longer served while they are classified
+        angleLogger.markClean(player);
+        assertNull(angleLogger.getFreshVerdict(player, 0, 1000));
+    }
+
+    @Test
+    public void unregisterOfflinePlayer() {
+        Player player = mock(Player.class);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.isOnline()).thenReturn(true);
+        PlayerAttackAngleLogger angleLogger = new PlayerAttackAngleLogger(
+                new FeaturePipeline(FeaturePipeline.LEGACY_FEATURES, FeaturePipeline.getBuiltInExtractors()), 8, 0);
+
+        angleLogger.registerPlayer(player);
+        angleLogger.unregisterPlayer(player);
+        assertEquals(1, angleLogger.getTrackedPlayerCount());
+
+        // a player who quit while being logged is forgotten once the logging ends
+        angleLogger.registerPlayer(player);
+        when(player.isOnline()).thenReturn(false);
+        angleLogger.unregisterPlayer(player);
+        assertFalse(angleLogger.isRegistered(player));
+        assertEquals(0, angleLogger.getTrackedPlayerCount());
+    }
+
+}
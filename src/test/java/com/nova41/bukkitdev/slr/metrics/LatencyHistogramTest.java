@@ -0,0 +1,41 @@
+package com.nova41.bukkitdev.slr.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void record() {
+        LatencyHistogram histogram = new LatencyHistogram("test_seconds", "Test");
+        histogram.record(100);
+        histogram.record(256);
+        histogram.record(257);
+        histogram.record(1000);
+        histogram.record(Long.MAX_VALUE / 2);
+
+        assertEquals(2, histogram.getBucketValue(0));
+        assertEquals(1, histogram.getBucketValue(1));
+        assertEquals(1, histogram.getBucketValue(2));
+        assertEquals(1, histogram.getBucketValue(histogram.getBucketCount() - 1));
+        assertEquals(5, histogram.getCount());
+        assertEquals(Long.MAX_VALUE / 2, histogram.getMax());
+    }
+
+    @Test
+    public void percentile() {
+        LatencyHistogram histogram = new LatencyHistogram("test_seconds", "Test");
+        assertEquals(0, histogram.getPercentile(0.5));
+
+        for (int i = 1; i <= 99; i++)
+            histogram.record(200);
+        histogram.record(3000);
+
+        assertEquals(256, histogram.getPercentile(0.5));
+        assertEquals(256, histogram.getPercentile(0.99));
+        // the bucket of the slowest latency is bounded by 4096 ns, but nothing took longer than 3000 ns
+        assertEquals(3000, histogram.getPercentile(1));
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.nova41.bukkitdev.slr.metrics;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricRegistryTest {
+
+    @Test
+    public void writePrometheus() throws IOException {
+        MetricRegistry registry = new MetricRegistry();
+        Counter counter = registry.counter("test_total", "A counter");
+        counter.add(3);
+        assertSame(counter, registry.counter("test_total", "A counter"));
+
+        LatencyHistogram histogram = registry.histogram("test_seconds", "A histogram");
+        histogram.record(200);
+        histogram.record(500_000_000);
+
+        registry.gauge("test_gauge", "A gauge", () -> 1);
+        registry.gauge("test_gauge", "A gauge", () -> 42);
+
+        StringWriter out = new StringWriter();
+        registry.writePrometheus(out);
+        String text = out.toString();
+
+        assertTrue(text.contains("# TYPE test_total counter\ntest_total 3\n"));
+        assertTrue(text.contains("# TYPE test_seconds histogram\n"));
+        assertTrue(text.contains("test_seconds_bucket{le=\"2.56E-7\"} 1\n"));
+        assertTrue(text.contains("test_seconds_bucket{le=\"0.536870912\"} 2\n"));
+        assertTrue(text.contains("test_seconds_bucket{le=\"+Inf\"} 2\n"));
+        assertTrue(text.contains("test_seconds_sum 0.5000002\n"));
+        assertTrue(text.contains("test_seconds_count 2\n"));
+        assertTrue(text.contains("# TYPE test_gauge gauge\ntest_gauge 42.0\n"));
+    }
+
+}
@@ -0,0 +1,130 @@
+package com.nova41.bukkitdev.slr.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KNearestNeighbourClassifierTest {
+
+    @Test
+    public void testPredict() {
+        LVQNeuralNetwork neuralNetwork = new LVQNeuralNetwork(2, 0.5, 0.99, 0.10);
+        neuralNetwork.addData(new LabeledData(0, new double[]{0.1, 0.2}));
+        neuralNetwork.addData(new LabeledData(0, new double[]{0.2, 0.1}));
+        neuralNetwork.addData(new LabeledData(0, new double[]{0.9, 0.9}));
+        neuralNetwork.addData(new LabeledData(1, new double[]{0.9, 0.8}));
+        neuralNetwork.addData(new LabeledData(1, new double[]{0.8, 0.9}));
+        neuralNetwork.normalize();
+
+        // the outlier of category 0 is outvoted by its neighbours of category 1
+        KNearestNeighbourClassifier classifier = KNearestNeighbourClassifier.build(neuralNetwork, 3);
+        LVQNeuralNetworkPredictResult result = classifier.predict(new double[]{0.9, 0.9});
+        assertEquals(1, result.getCategory());
+        assertEquals(0.125, result.getDifference(), 1e-12);
+        // the nearest neighbour, which is of another category, makes the result as unlikely as a tie
+        assertEquals(1, result.getLikelihood(), 0);
+
+        assertEquals(0, classifier.predict(new double[]{0.15, 0.15}).getCategory());
+        assertEquals(0, KNearestNeighbourClassifier.build(neuralNetwork, 1).predict(new double[]{0.9, 0.9}).getCategory());
+    }
+
+    @Test
+    public void testOutvotedNearestNeighbour() {
+        LVQNeuralNetwork neuralNetwork = new LVQNeuralNetwork(1, 0.5, 0.99, 0.10);
+        neuralNetwork.addData(new LabeledData(0, new double[]{0.0}));
+        neuralNetwork.addData(new LabeledData(1, new double[]{0.35}));
+        neuralNetwork.addData(new LabeledData(0, new double[]{0.5}));
+        neuralNetwork.addData(new LabeledData(1, new double[]{0.7}));
+        neuralNetwork.addData(new LabeledData(1, new double[]{1.0}));
+        neuralNetwork.normalize();
+
+        // the nearest neighbour is of category 0, but the two next to it outvote it
+        KNearestNeighbourClassifier classifier = KNearestNeighbourClassifier.build(neuralNetwork, 3);
+        LVQNeuralNetworkPredictResult result = classifier.predict(new double[]{0.52});
+        assertEquals(1, result.getCategory());
+        assertEquals(0.17, result.getDifference(), 1e-12);
+        assertTrue(result.getLikelihood() <= 1);
+
+        int[] bestCategories = new int[1];
+        double[] bestDistances = new double[1];
+        double[] secondDistances = new double[1];
+        classifier.predict(new double[]{0.52}, 1, bestCategories, bestDistances, secondDistances, false);
+        assertEquals(1, bestCategories[0]);
+        assertTrue(bestDistances[0] <= secondDistances[0]);
+    }
+
+    @Test
+    public void testMatchesBruteForce() {
+        int dimension = 3;
+        int k = 7;
+        LVQNeuralNetwork neuralNetwork = new LVQNeuralNetwork(dimension, 0.5, 0.99, 0.10);
+        Random random = new Random(41);
+        double[] dataset = new double[5000 * dimension];
+        int[] categories = new int[5000];
+        for (int i = 0; i <= categories.length - 1; i++) {
+            categories[i] = random.nextInt(4);
+            for (int j = 0; j <= dimension - 1; j++)
+                dataset[i * dimension + j] = random.nextGaussian() * 0.2 + categories[i] * 0.1;
+            neuralNetwork.addData(categories[i], Arrays.copyOfRange(dataset, i * dimension, (i + 1) * dimension), 1);
+        }
+        neuralNetwork.normalize();
+        KNearestNeighbourClassifier classifier = KNearestNeighbourClassifier.build(neuralNetwork, k);
+
+        double[] scaled = new double[dataset.length];
+        for (int i = 0; i <= categories.length - 1; i++)
+            neuralNetwork.scaleVector(i, scaled, i * dimension);
+
+        int count = 200;
+        double[] matrix = new double[count * dimension];
+        for (int i = 0; i <= matrix.length - 1; i++)
+            matrix[i] = random.nextGaussian() * 0.2 + 0.15;
+        double[] queries = matrix.clone();
+        int[] bestCategories = new int[count];
+        double[] bestDistances = new double[count];
+        double[] secondDistances = new double[count];
+        classifier.predict(matrix, count, bestCategories, bestDistances, secondDistances, true);
+
+        for (int query = 0; query <= count - 1; query++) {
+            // find the k nearest vectors one by one and let them vote
+            double[] vector = Arrays.copyOfRange(matrix, query * dimension, (query + 1) * dimension);
+            double[] distances = IntStream.range(0, categories.length)
+                    .mapToDouble(i -> squaredDistance(vector, scaled, i * dimension)).toArray();
+            int[] nearest = IntStream.range(0, categories.length).boxed()
+                    .sorted(Comparator.comparingDouble(i -> distances[i]))
+                    .limit(k).mapToInt(i -> i).toArray();
+            int[] votes = new int[4];
+            for (int i : nearest)
+                votes[categories[i]]++;
+            int expected = -1;
+            for (int i : nearest)
+                if (expected == -1 || votes[categories[i]] > votes[expected])
+                    expected = categories[i];
+
+            assertEquals(expected, bestCategories[query]);
+            for (int i : nearest)
+                if (categories[i] == expected) {
+                    assertEquals(Math.sqrt(distances[i]), bestDistances[query], 1e-12);
+                    break;
+                }
+
+            // a single query is classified the same way
+            LVQNeuralNetworkPredictResult result = classifier.predict(Arrays.copyOfRange(queries, query * dimension, (query + 1) * dimension));
+            assertEquals(bestCategories[query], result.getCategory());
+            assertEquals(bestDistances[query] / secondDistances[query], result.getLikelihood(), 1e-12);
+        }
+    }
+
+    private static double squaredDistance(double[] vector, double[] vectors, int offset) {
+        double distance = 0;
+        for (int i = 0; i <= vector.length - 1; i++)
+            distance += (vector[i] - vectors[offset + i]) * (vector[i] - vectors[offset + i]);
+        return distance;
+    }
+
+}
@@ -3,8 +3,14 @@ package com.nova41.bukkitdev.slr.model;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class LVQNeuralNetworkTest {
 
@@ -37,4 +43,285 @@ public class LVQNeuralNetworkTest {
                 Arrays.toString(testData), predictResult.getCategory(), predictResult.getDifference());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testSnapshot() {
+        LVQNeuralNetwork neuralNetwork = new LVQNeuralNetwork(2, 0.5, 0.99, 0.10);
+        neuralNetwork.addData(new LabeledData(0, new double[]{0.1, 0.2}));
+        neuralNetwork.addData(new LabeledData(0, new double[]{0.2, 0.1}));
+        neuralNetwork.addData(new LabeledData(1, new double[]{0.9, 0.8}));
+        neuralNetwork.addData(new LabeledData(1, new double[]{0.8, 0.9}));
+        neuralNetwork.normalize();
+        neuralNetwork.initializeOutputLayer();
+
+        assertNull(neuralNetwork.getSnapshot());
+        neuralNetwork.train();
+
+        // a published snapshot is not affected by further training
+        LVQNeuralNetworkSnapshot snapshot = neuralNetwork.getSnapshot();
+        double[] center = snapshot.getCenter(0);
+        for (int i = 1; i <= 10; i++)
+            neuralNetwork.train();
+
+        assertArrayEquals(center, snapshot.getCenter(0), 0);
+        assertEquals(1, snapshot.getSummaryStatistics().getEpoch());
+        assertEquals(11, neuralNetwork.getSummaryStatistics().getEpoch());
+    }
+
+    @Test
+    public void testBatchPredict() {
+        LVQNeuralNetwork neuralNetwork = new LVQNeuralNetwork(2, 0.5, 0.99, 0.10);
+        neuralNetwork.addData(new LabeledData(0, new double[]{0.1, 0.2}));
+        neuralNetwork.addData(new LabeledData(0, new double[]{0.2, 0.1}));
+        neuralNetwork.addData(new LabeledData(1, new double[]{0.9, 0.8}));
+        neuralNetwork.addData(new LabeledData(1, new double[]{0.8, 0.9}));
+        neuralNetwork.normalize();
+        neuralNetwork.initializeOutputLayer();
+        for (int i = 1; i <= 20; i++)
+            neuralNetwork.train();
+
+        double[][] vectors = new double[][]{{0.15, 0.1}, {0.85, 0.95}, {0.3, 0.2}};
+        double[] matrix = new double[]{0.15, 0.1, 0.85, 0.95, 0.3, 0.2};
+        int[] bestCategories = new int[3];
+        double[] bestDistances = new double[3];
+        double[] secondDistances = new double[3];
+        neuralNetwork.predict(matrix, 3, bestCategories, bestDistances, secondDistances, true);
+
+        for (int i = 0; i <= 2; i++) {
+            LVQNeuralNetworkPredictResult result = neuralNetwork.predict(vectors[i]);
+            assertEquals(result.getCategory(), bestCategories[i]);
+            assertEquals(result.getDifference(), bestDistances[i], 1e-12);
+            assertEquals(result.getLikelihood(), bestDistances[i] / secondDistances[i], 1e-12);
+
+            LVQNeuralNetworkPredictResult rankedResult = neuralNetwork.predict(vectors[i], true);
+            assertEquals(result.getCategory(), rankedResult.getRankedCategories()[0]);
+            assertEquals(secondDistances[i], rankedResult.getRankedDifferences()[1], 1e-12);
+        }
+    }
+
+    @Test
+    public void testParallelTrain() {
+        LVQNeuralNetwork neuralNetwork = new LVQNeuralNetwork(2, 0.5, 0.99, 0.10);
+        Random random = new Random(41);
+        for (int i = 1; i <= 5000; i++) {
+            neuralNetwork.addData(new LabeledData(0, new double[]{random.nextGaussian() * 0.1 + 0.2, random.nextGaussian() * 0.1 + 0.3}));
+            neuralNetwork.addData(new LabeledData(1, new double[]{random.nextGaussian() * 0.1 + 0.8, random.nextGaussian() * 0.1 + 0.7}));
+        }
+        neuralNetwork.normalize();
+        neuralNetwork.initializeOutputLayer();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        for (int i = 1; i <= 50; i++)
+            neuralNetwork.train(pool);
+        pool.shutdown();
+
+        assertEquals(0, neuralNetwork.predict(new double[]{0.2, 0.3}).getCategory());
+        assertEquals(1, neuralNetwork.predict(new double[]{0.8, 0.7}).getCategory());
+    }
+
+    @Test
+    public void testEarlyStopping() {
+        LVQNeuralNetwork neuralNetwork = new LVQNeuralNetwork(2, 0.5, 0.95, 0.01);
+        neuralNetwork.addData(new LabeledData(0, new double[]{0.1, 0.2}));
+        neuralNetwork.addData(new LabeledData(0, new double[]{0.2, 0.1}));
+        neuralNetwork.addData(new LabeledData(1, new double[]{0.9, 0.8}));
+        neuralNetwork.addData(new LabeledData(1, new double[]{0.8, 0.9}));
+        neuralNetwork.normalize();
+        neuralNetwork.initializeOutputLayer();
+
+        LVQNeuralNetworkEpochStats stats = neuralNetwork.train(1000, 1e-6, null);
+        LVQNeuralNetworkSummary summary = neuralNetwork.getSummaryStatistics();
+
+        assertEquals(LVQNeuralNetworkStopReason.CONVERGED, summary.getStopReason());
+        assertTrue(summary.getEpoch() < 1000);
+        assertEquals(summary.getEpoch(), stats.getEpoch());
+        assertEquals(0, stats.getMisclassificationRate(), 0);
+    }
+
+    @Test
+    public void testScaling() {
+        LVQNeuralNetwork neuralNetwork = new LVQNeuralNetwork(3, 0.5, 0.95, 0.01);
+        neuralNetwork.addData(new LabeledData(0, new double[]{0.1, 2, 5}));
+        neuralNetwork.addData(new LabeledData(0, new double[]{0.3, 4, 5}));
+        neuralNetwork.addData(new LabeledData(1, new double[]{0.9, 6, 5}));
+        neuralNetwork.normalize();
+        neuralNetwork.initializeOutputLayer();
+        neuralNetwork.train();
+
+        // the constant feature is scaled to 0 instead of being divided by zero
+        double[][] scaling = neuralNetwork.getSnapshot().getScalingOfRow();
+        assertArrayEquals(new double[]{0.1, 1 / 0.8}, scaling[0], 1e-12);
+        assertArrayEquals(new double[]{2, 0.25}, scaling[1], 1e-12);
+        assertArrayEquals(new double[]{5, 0}, scaling[2], 0);
+        assertEquals(1, neuralNetwork.predict(new double[]{0.9, 6, 100}).getCategory());
+
+        // adding data and switching the scaling mode only update the statistics kept by the network
+        neuralNetwork.addData(new LabeledData(1, new double[]{0.7, 8, 5}));
+        neuralNetwork.setScalingMode(LVQNeuralNetworkScalingMode.Z_SCORE);
+        neuralNetwork.normalize();
+        neuralNetwork.initializeOutputLayer();
+        neuralNetwork.train();
+
+        scaling = neuralNetwork.getSnapshot().getScalingOfRow();
+        assertEquals(LVQNeuralNetworkScalingMode.Z_SCORE, neuralNetwork.getSnapshot().getScalingMode());
+        assertArrayEquals(new double[]{0.5, 1 / Math.sqrt(0.1)}, scaling[0], 1e-12);
+        assertArrayEquals(new double[]{5, 1 / Math.sqrt(5)}, scaling[1], 1e-12);
+        assertArrayEquals(new double[]{5, 0}, scaling[2], 0);
+    }
+
+    @Test
+    public void testLearn() {
+        LVQNeuralNetwork neuralNetwork = new LVQNeuralNetwork(2, 0.5, 0.95, 0.01);
+        Random random = new Random(41);
+        for (int i = 1; i <= 100; i++) {
+            neuralNetwork.addData(new LabeledData(0, new double[]{random.nextGaussian() * 0.05 + 0.2, random.nextGaussian() * 0.05 + 0.2}));
+            neuralNetwork.addData(new LabeledData(1, new double[]{random.nextGaussian() * 0.05 + 0.8, random.nextGaussian() * 0.05 + 0.8}));
+        }
+        neuralNetwork.normalize();
+        neuralNetwork.initializeOutputLayer();
+        neuralNetwork.train(50, 0, null);
+
+        // a new category is registered and learned without retraining the network from scratch
+        double[] data = new double[20 * 2];
+        for (int i = 0; i <= 19; i++) {
+            data[i * 2] = random.nextGaussian() * 0.05 + 0.2;
+            data[i * 2 + 1] = random.nextGaussian() * 0.05 + 0.8;
+        }
+        LVQNeuralNetworkEpochStats stats = neuralNetwork.learn(2, data, 20, 10);
+
+        LVQNeuralNetworkSummary summary = neuralNetwork.getSummaryStatistics();
+        assertEquals(LVQNeuralNetworkStopReason.LEARNED, summary.getStopReason());
+        assertEquals(60, summary.getEpoch());
+        assertEquals(60, stats.getEpoch());
+        assertEquals(220, summary.getInputCount());
+        assertEquals(3, summary.getOutputCount());
+        assertEquals(0, neuralNetwork.predict(new double[]{0.2, 0.2}).getCategory());
+        assertEquals(1, neuralNetwork.predict(new double[]{0.8, 0.8}).getCategory());
+        assertEquals(2, neuralNetwork.predict(new double[]{0.2, 0.8}).getCategory());
+    }
+
+    @Test
+    public void testLearnAfterRestore() {
+        LVQNeuralNetwork neuralNetwork = new LVQNeuralNetwork(2, 0.5, 0.95, 0.01);
+        Random random = new Random(41);
+        double[][] dataset = new double[2][100 * 2];
+        for (int i = 0; i <= 99; i++)
+            for (int category = 0; category <= 1; category++) {
+                dataset[category][i * 2] = random.nextGaussian() * 0.05 + 0.2 + category * 0.6;
+                dataset[category][i * 2 + 1] = random.nextGaussian() * 0.05 + 0.2 + category * 0.6;
+            }
+        neuralNetwork.addData(0, dataset[0], 100);
+        neuralNetwork.addData(1, dataset[1], 100);
+        neuralNetwork.normalize();
+        neuralNetwork.initializeOutputLayer();
+        neuralNetwork.train(50, 0, null);
+
+        double[] data = new double[20 * 2];
+        for (int i = 0; i <= 19; i++) {
+            data[i * 2] = random.nextGaussian() * 0.05 + 0.2;
+            data[i * 2 + 1] = random.nextGaussian() * 0.05 + 0.8;
+        }
+
+        // a restored network has no vectors to replay, so it refuses to learn until its dataset is added back
+        LVQNeuralNetwork restoredNetwork = new LVQNeuralNetwork(2, 0.5, 0.95, 0.01);
+        restoredNetwork.loadSnapshot(neuralNetwork.getSnapshot());
+        try {
+            restoredNetwork.learn(2, data, 20, 10);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(0, restoredNetwork.getVectorCount());
+
+        // adding the dataset back keeps the restored scaling, and the other categories are replayed while learning
+        double[][] scalingOfRow = restoredNetwork.getSnapshot().getScalingOfRow();
+        restoredNetwork.addData(0, dataset[0], 100);
+        restoredNetwork.addData(1, dataset[1], 100);
+        restoredNetwork.learn(2, data, 20, 10);
+
+        assertArrayEquals(scalingOfRow, restoredNetwork.getSnapshot().getScalingOfRow());
+        assertEquals(220, restoredNetwork.getSummaryStatistics().getInputCount());
+        assertEquals(3, restoredNetwork.getSummaryStatistics().getOutputCount());
+        assertEquals(0, restoredNetwork.predict(new double[]{0.2, 0.2}).getCategory());
+        assertEquals(1, restoredNetwork.predict(new double[]{0.8, 0.8}).getCategory());
+        assertEquals(2, restoredNetwork.predict(new double[]{0.2, 0.8}).getCategory());
+    }
+
+    @Test
+    public void testLearnFromScratch() {
+        LVQNeuralNetwork neuralNetwork = new LVQNeuralNetwork(2, 0.5, 0.95, 0.01);
+        neuralNetwork.learn(0, new double[]{0.1, 0.2, 0.2, 0.1}, 2, 5);
+        neuralNetwork.learn(1, new double[]{0.9, 0.8, 0.8, 0.9}, 2, 5);
+
+        assertEquals(2, neuralNetwork.getSummaryStatistics().getOutputCount());
+        assertEquals(0, neuralNetwork.predict(new double[]{0.15, 0.15}).getCategory());
+        assertEquals(1, neuralNetwork.predict(new double[]{0.85, 0.85}).getCategory());
+    }
+
+    @Test
+    public void testMultiplePrototypes() {
+        // category 0 is made up of two clusters on a diagonal and category 1 of two on the other, which one center can't fit
+        double[][] clusters = {{0.2, 0.2}, {0.8, 0.8}, {0.2, 0.8}, {0.8, 0.2}};
+        LVQNeuralNetwork neuralNetwork = new LVQNeuralNetwork(2, 0.3, 0.95, 0.01, 2);
+        Random random = new Random(41);
+        for (int i = 1; i <= 200; i++)
+            for (int cluster = 0; cluster <= 3; cluster++)
+                neuralNetwork.addData(new LabeledData(cluster / 2, new double[]{
+                        clusters[cluster][0] + random.nextGaussian() * 0.05, clusters[cluster][1] + random.nextGaussian() * 0.05}));
+        neuralNetwork.normalize();
+        neuralNetwork.initializeOutputLayer();
+        neuralNetwork.train(100, 0, null);
+
+        assertEquals(4, neuralNetwork.getSummaryStatistics().getOutputCount());
+        for (int cluster = 0; cluster <= 3; cluster++) {
+            LVQNeuralNetworkPredictResult result = neuralNetwork.predict(clusters[cluster], true);
+            assertEquals(cluster / 2, result.getCategory());
+            // the likelihood compares the best match with the nearest center of the other category
+            assertTrue(result.getLikelihood() < 0.5);
+        }
+    }
+
+    @Test
+    public void testManyPrototypes() {
+        // hundreds of class centers are looked up through a tree, which must find the same ones as comparing all of them
+        int dimension = 4;
+        int centerCount = 640;
+        Random random = new Random(41);
+        double[] centers = new double[centerCount * dimension];
+        int[] centerCategories = new int[centerCount];
+        for (int i = 0; i <= centerCount - 1; i++) {
+            centerCategories[i] = random.nextInt(8);
+            for (int j = 0; j <= dimension - 1; j++)
+                centers[i * dimension + j] = random.nextDouble() + centerCategories[i] * 0.05;
+        }
+        double[] offsetOfRow = new double[dimension];
+        double[] scaleOfRow = new double[dimension];
+        Arrays.fill(scaleOfRow, 1);
+        LVQNeuralNetworkSnapshot snapshot = new LVQNeuralNetworkSnapshot(dimension, centers.clone(), centerCategories.clone(),
+                LVQNeuralNetworkScalingMode.MIN_MAX, offsetOfRow, scaleOfRow,
+                new LVQNeuralNetworkSummary(0, 0, 0, centerCount, LVQNeuralNetworkStopReason.UNTRAINED, null));
+
+        for (int query = 1; query <= 200; query++) {
+            double[] vector = new double[dimension];
+            for (int j = 0; j <= dimension - 1; j++)
+                vector[j] = random.nextDouble() * 1.4 - 0.2;
+
+            int best = 0;
+            double[] distances = new double[centerCount];
+            for (int i = 0; i <= centerCount - 1; i++) {
+                for (int j = 0; j <= dimension - 1; j++)
+                    distances[i] += (vector[j] - centers[i * dimension + j]) * (vector[j] - centers[i * dimension + j]);
+                if (distances[i] < distances[best])
+                    best = i;
+            }
+            double second = Double.POSITIVE_INFINITY;
+            for (int i = 0; i <= centerCount - 1; i++)
+                if (centerCategories[i] != centerCategories[best])
+                    second = Math.min(second, distances[i]);
+
+            LVQNeuralNetworkPredictResult result = snapshot.predict(vector);
+            assertEquals(centerCategories[best], result.getCategory());
+            assertEquals(Math.sqrt(distances[best]), result.getDifference(), 1e-12);
+            assertEquals(Math.sqrt(distances[best] / second), result.getLikelihood(), 1e-12);
+        }
+    }
+
+}
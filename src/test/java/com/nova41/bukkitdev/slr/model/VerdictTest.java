@@ -0,0 +1,30 @@
+package com.nova41.bukkitdev.slr.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class VerdictTest {
+
+    @Test
+    public void confidence() {
+        // likelihood 0.25, so the verdict starts with a confidence of 0.75
+        Verdict verdict = new Verdict(new double[]{1, 2}, new LVQNeuralNetworkPredictResult(0, 1, 4), 1000);
+
+        assertEquals(0.75, verdict.getConfidence(1000, 500), 1e-12);
+        assertEquals(0.375, verdict.getConfidence(1500, 500), 1e-12);
+        assertEquals(0.1875, verdict.getConfidence(2000, 500), 1e-12);
+        assertEquals(0.75, verdict.getConfidence(1_000_000, 0), 1e-12);
+
+        // a clock behind the verdict doesn't raise the confidence
+        assertEquals(0.75, verdict.getConfidence(0, 500), 1e-12);
+    }
+
+    @Test
+    public void confidenceOfUndecidedResult() {
+        // a vector equally far from two categories, or on top of both, is not classified with any confidence
+        assertEquals(0, new Verdict(new double[1], new LVQNeuralNetworkPredictResult(0, 2, 2), 0).getConfidence(0, 500), 0);
+        assertEquals(0, new Verdict(new double[1], new LVQNeuralNetworkPredictResult(0, 0, 0), 0).getConfidence(0, 500), 0);
+    }
+
+}
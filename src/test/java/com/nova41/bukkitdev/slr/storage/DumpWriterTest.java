@@ -0,0 +1,48 @@
+package com.nova41.bukkitdev.slr.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+public class DumpWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeAndRead() throws IOException {
+        // segments small enough to hold only a few records each
+        DumpWriter writer = new DumpWriter(folder.getRoot().toPath(), Logger.getAnonymousLogger(), 64, 4, 256);
+        for (int i = 0; i <= 9; i++)
+            assertTrue(writer.offer(new DumpRecord(i, "player" + i, new double[]{i, i + 0.5}, new float[]{i, -i, 10})));
+        writer.close();
+        assertFalse(writer.offer(new DumpRecord(10, "player10", new double[0], new float[0])));
+
+        File[] segments = folder.getRoot().listFiles((dir, name) -> name.endsWith("." + DumpWriter.FILE_EXTENSION));
+        assertNotNull(segments);
+        assertTrue(segments.length > 1);
+
+        List<DumpRecord> records = new ArrayList<>();
+        for (File segment : segments)
+            records.addAll(DumpWriter.read(segment.toPath()));
+        records.sort((a, b) -> Long.compare(a.getTimestamp(), b.getTimestamp()));
+
+        assertEquals(10, records.size());
+        for (int i = 0; i <= 9; i++) {
+            DumpRecord record = records.get(i);
+            assertEquals("player" + i, record.getPlayerName());
+            assertArrayEquals(new double[]{i, i + 0.5}, record.getFeatures(), 0);
+            assertTrue(Arrays.equals(new float[]{i, -i, 10}, record.getAngles()));
+        }
+    }
+
+}
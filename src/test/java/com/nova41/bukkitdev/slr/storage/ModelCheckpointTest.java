@@ -0,0 +1,56 @@
+package com.nova41.bukkitdev.slr.storage;
+
+import com.nova41.bukkitdev.slr.feature.FeaturePipeline;
+import com.nova41.bukkitdev.slr.model.LVQNeuralNetwork;
+import com.nova41.bukkitdev.slr.model.LabeledData;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class ModelCheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void saveAndLoad() throws IOException {
+        LVQNeuralNetwork neuralNetwork = new LVQNeuralNetwork(2, 0.5, 0.99, 0.10);
+        neuralNetwork.addData(new LabeledData(0, new double[]{0.1, 0.2}));
+        neuralNetwork.addData(new LabeledData(1, new double[]{0.9, 0.8}));
+        neuralNetwork.normalize();
+        neuralNetwork.initializeOutputLayer();
+        neuralNetwork.train(10, 0, null);
+
+        Map<String, Integer> categoryNameMap = new HashMap<>();
+        categoryNameMap.put("legit", 0);
+        categoryNameMap.put("killaura", 1);
+
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("LVQNN_parameters.step_size", "0.5");
+        parameters.put("LVQNN_train.epoch", "10");
+
+        Path file = folder.getRoot().toPath().resolve(ModelCheckpoint.FILE_NAME);
+        new ModelCheckpoint(neuralNetwork.getSnapshot(), categoryNameMap, FeaturePipeline.LEGACY_FEATURES, parameters).save(file);
+        ModelCheckpoint checkpoint = ModelCheckpoint.load(file);
+
+        // a network restored from the checkpoint classifies data the same way as the original one
+        LVQNeuralNetwork restoredNetwork = new LVQNeuralNetwork(2, 0.5, 0.99, 0.10);
+        restoredNetwork.loadSnapshot(checkpoint.getSnapshot());
+        double[] testData = new double[]{0.3, 0.4};
+        assertEquals(neuralNetwork.predict(testData).getCategory(), restoredNetwork.predict(testData).getCategory());
+        assertEquals(neuralNetwork.predict(testData).getDifference(), restoredNetwork.predict(testData).getDifference(), 0);
+
+        assertEquals(categoryNameMap, checkpoint.getCategoryNameMap());
+        assertEquals(FeaturePipeline.LEGACY_FEATURES, checkpoint.getFeatureNames());
+        assertEquals(parameters, checkpoint.getParameters());
+        assertEquals(10, restoredNetwork.getSummaryStatistics().getEpoch());
+    }
+
+}
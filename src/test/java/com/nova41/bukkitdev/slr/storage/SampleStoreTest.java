@@ -0,0 +1,95 @@
+package com.nova41.bukkitdev.slr.storage;
+
+import com.nova41.bukkitdev.slr.feature.FeaturePipeline;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+public class SampleStoreTest {
+
+    private static final int FEATURE_SET = SampleStore.featureSetOf(Arrays.asList("angle_variance", "angle_mean"), false);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendAndRead() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("category." + SampleStore.FILE_EXTENSION);
+
+        SampleStore.append(file, 2, FEATURE_SET, new double[]{0.1, 0.2}, new double[]{0.3, 0.4});
+        SampleStore.append(file, 2, FEATURE_SET, new double[]{0.5, 0.6});
+
+        assertArrayEquals(new double[]{0.1, 0.2, 0.3, 0.4, 0.5, 0.6}, SampleStore.read(file, 2, FEATURE_SET), 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void readWithWrongDimension() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("category." + SampleStore.FILE_EXTENSION);
+        SampleStore.append(file, 2, FEATURE_SET, new double[]{0.1, 0.2});
+
+        SampleStore.read(file, 4, FEATURE_SET);
+    }
+
+    @Test(expected = IOException.class)
+    public void readWithOtherFeatures() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("category." + SampleStore.FILE_EXTENSION);
+        SampleStore.append(file, 2, FEATURE_SET, new double[]{0.1, 0.2});
+
+        // same dimension, but other features
+        int otherFeatureSet = SampleStore.featureSetOf(Arrays.asList("angle_median", "angle_p90"), false);
+        assertNotEquals(FEATURE_SET, otherFeatureSet);
+        SampleStore.read(file, 2, otherFeatureSet);
+    }
+
+    @Test(expected = IOException.class)
+    public void readWithOtherSampling() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("category." + SampleStore.FILE_EXTENSION);
+        SampleStore.append(file, 2, FEATURE_SET, new double[]{0.1, 0.2});
+
+        // same features, but angles were sampled between attacks too
+        SampleStore.read(file, 2, SampleStore.featureSetOf(Arrays.asList("angle_variance", "angle_mean"), true));
+    }
+
+    @Test
+    public void readLegacyStore() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("category." + SampleStore.FILE_EXTENSION);
+        int legacyFeatureSet = SampleStore.featureSetOf(FeaturePipeline.LEGACY_FEATURES, false);
+        SampleStore.append(file, 4, legacyFeatureSet, new double[]{0.1, 0.2, 0.3, 0.4});
+
+        // a store written before feature sets were recorded holds the legacy features, sampled from attacks
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4), 12);
+        }
+        assertArrayEquals(new double[]{0.1, 0.2, 0.3, 0.4}, SampleStore.read(file, 4, legacyFeatureSet), 0);
+
+        // so it is refused by other features of the same dimension, or when angles are sampled between attacks
+        int[] otherFeatureSets = {
+                SampleStore.featureSetOf(Arrays.asList("angle_median", "angle_p90", "angle_mean", "angle_variance"), false),
+                SampleStore.featureSetOf(FeaturePipeline.LEGACY_FEATURES, true)};
+        for (int otherFeatureSet : otherFeatureSets) {
+            try {
+                SampleStore.read(file, 4, otherFeatureSet);
+                fail();
+            } catch (IOException expected) {
+            }
+            try {
+                SampleStore.append(file, 4, otherFeatureSet, new double[]{0.5, 0.6, 0.7, 0.8});
+                fail();
+            } catch (IOException expected) {
+            }
+        }
+        assertArrayEquals(new double[]{0.1, 0.2, 0.3, 0.4}, SampleStore.read(file, 4, legacyFeatureSet), 0);
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.nova41.bukkitdev.slr.task;
+
+import com.nova41.bukkitdev.slr.listener.PlayerAttackAngleLogger;
+import com.nova41.bukkitdev.slr.model.Classifier;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+public class ClassificationScannerTest {
+
+    @Test
+    public void run() {
+        // players 0 to 3 attack enough to be classified, player 4 doesn't
+        List<Player> onlinePlayers = new ArrayList<>();
+        Server server = mock(Server.class);
+        PlayerAttackAngleLogger angleLogger = mock(PlayerAttackAngleLogger.class);
+        for (int i = 0; i <= 4; i++) {
+            Player player = mock(Player.class);
+            UUID uuid = UUID.randomUUID();
+            when(player.getUniqueId()).thenReturn(uuid);
+            when(player.isOnline()).thenReturn(true);
+            when(server.getPlayer(uuid)).thenReturn(player);
+            when(angleLogger.isDirty(player)).thenReturn(true);
+            when(angleLogger.getRunningAttackCount(player)).thenReturn(i <= 3 ? 10 : 1);
+            when(angleLogger.getRunningFeatures(player)).thenReturn(new double[]{i});
+            onlinePlayers.add(player);
+        }
+        doReturn(onlinePlayers).when(server).getOnlinePlayers();
+
+        // tasks run right away
+        BukkitScheduler scheduler = mock(BukkitScheduler.class);
+        when(scheduler.runTask(any(Plugin.class), any(Runnable.class))).then(invocation -> {
+            ((Runnable) invocation.getArguments()[1]).run();
+            return null;
+        });
+        when(scheduler.runTaskAsynchronously(any(Plugin.class), any(Runnable.class))).then(invocation -> {
+            ((Runnable) invocation.getArguments()[1]).run();
+            return null;
+        });
+        when(server.getScheduler()).thenReturn(scheduler);
+        Plugin plugin = mock(Plugin.class);
+        when(plugin.getServer()).thenReturn(server);
+
+        // the classifier takes the feature of a player as its category
+        Classifier classifier = mock(Classifier.class);
+        doAnswer(invocation -> {
+            double[] matrix = (double[]) invocation.getArguments()[0];
+            int[] bestCategories = (int[]) invocation.getArguments()[2];
+            for (int i = 0; i <= (int) invocation.getArguments()[1] - 1; i++)
+                bestCategories[i] = (int) matrix[i];
+            return null;
+        }).when(classifier).predict(any(double[].class), anyInt(), any(int[].class), any(double[].class), any(double[].class), anyBoolean());
+
+        // every reading of the clock takes 0.3 ms, so 3 players fit in the tick budget of 1 ms
+        AtomicLong time = new AtomicLong();
+        List<Integer> classified = new ArrayList<>();
+        ClassificationScanner scanner = new ClassificationScanner(plugin, angleLogger, () -> classifier,
+                (player, features, result) -> classified.add(result.getCategory()), 6000, 5, 1.0, false,
+                () -> time.addAndGet(300_000));
+
+        // the first round only opens windows, over two ticks
+        scanner.run();
+        verify(angleLogger, times(3)).resetRunningFeatures(any(Player.class));
+        scanner.run();
+        verify(angleLogger, times(5)).resetRunningFeatures(any(Player.class));
+
+        // nobody is visited again until a window has passed
+        for (int i = 1; i <= 10; i++)
+            scanner.run();
+        verify(server, times(1)).getOnlinePlayers();
+        verify(server, times(5)).getPlayer(any(UUID.class));
+        assertEquals(0, classified.size());
+
+        // the next round classifies players who attacked enough, within the tick budget
+        time.addAndGet(6_000_000_000L);
+        scanner.run();
+        assertEquals(3, classified.size());
+        scanner.run();
+        assertEquals(4, classified.size());
+        assertEquals(Arrays.asList(0, 1, 2, 3), classified);
+        verify(angleLogger, never()).getRunningFeatures(onlinePlayers.get(4));
+        verify(server, times(2)).getOnlinePlayers();
+    }
+
+}
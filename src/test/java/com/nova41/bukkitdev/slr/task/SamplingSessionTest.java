@@ -0,0 +1,44 @@
+package com.nova41.bukkitdev.slr.task;
+
+import com.nova41.bukkitdev.slr.feature.FeatureAccumulator;
+import com.nova41.bukkitdev.slr.feature.FeaturePipeline;
+import com.nova41.bukkitdev.slr.listener.PlayerAttackAngleLogger;
+import com.nova41.bukkitdev.slr.util.FloatRingBuffer;
+import org.bukkit.entity.Player;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.*;
+
+public class SamplingSessionTest {
+
+    @Test
+    public void run() {
+        Player player = mock(Player.class);
+        when(player.isOnline()).thenReturn(true);
+
+        FloatRingBuffer window = new FloatRingBuffer(8, 0, FeatureAccumulator.CHANNELS);
+        window.add(new float[]{1, 0, 0}, 0);
+        window.add(new float[]{3, 0, 0}, 0);
+        PlayerAttackAngleLogger angleLogger = mock(PlayerAttackAngleLogger.class);
+        when(angleLogger.takeLoggedAngles(player)).thenReturn(window, window, null);
+
+        AtomicReference<double[][]> sampled = new AtomicReference<>();
+        FeaturePipeline featurePipeline = new FeaturePipeline(FeaturePipeline.LEGACY_FEATURES, FeaturePipeline.getBuiltInExtractors());
+        SamplingSession session = new SamplingSession(angleLogger, featurePipeline, player, 3, sampled::set);
+
+        // a vector is sampled at the end of each window
+        session.run();
+        session.run();
+        assertNull(sampled.get());
+
+        // the player attacked nobody in the last window, so the session finishes with the vectors sampled so far
+        session.run();
+        assertEquals(2, sampled.get().length);
+        verify(angleLogger).unregisterPlayer(player);
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.nova41.bukkitdev.slr.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FloatRingBufferTest {
+
+    @Test
+    public void add() {
+        FloatRingBuffer buffer = new FloatRingBuffer(4, 0);
+        for (int i = 1; i <= 6; i++)
+            buffer.add(i, i);
+
+        // the oldest values are dropped, and the rest are contiguous in the backing array
+        assertEquals(4, buffer.size());
+        assertArrayEquals(new float[]{3, 4, 5, 6}, buffer.toArray(), 0);
+        assertArrayEquals(new float[]{3, 4, 5, 6},
+                Arrays.copyOfRange(buffer.getArray(), buffer.getOffset(), buffer.getOffset() + buffer.size()), 0);
+    }
+
+    @Test
+    public void expire() {
+        FloatRingBuffer buffer = new FloatRingBuffer(8, 100);
+        buffer.add(1, 0);
+        buffer.add(2, 50);
+        buffer.add(3, 120);
+
+        assertArrayEquals(new float[]{2, 3}, buffer.toArray(), 0);
+        buffer.expire(200);
+        assertArrayEquals(new float[]{3}, buffer.toArray(), 0);
+    }
+
+    @Test
+    public void addEntries() {
+        FloatRingBuffer buffer = new FloatRingBuffer(3, 0, 2);
+        for (int i = 1; i <= 5; i++)
+            buffer.add(new float[]{i, -i}, i * 10);
+
+        // every channel and the timestamps are contiguous in their backing arrays
+        int from = buffer.getOffset(), to = buffer.getOffset() + buffer.size();
+        assertArrayEquals(new float[]{3, 4, 5}, Arrays.copyOfRange(buffer.getArray(0), from, to), 0);
+        assertArrayEquals(new float[]{-3, -4, -5}, Arrays.copyOfRange(buffer.getArray(1), from, to), 0);
+        assertArrayEquals(new long[]{30, 40, 50}, Arrays.copyOfRange(buffer.getTimestampArray(), from, to));
+    }
+
+}
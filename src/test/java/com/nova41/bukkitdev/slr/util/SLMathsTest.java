@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 public class SLMathsTest {
@@ -27,4 +28,24 @@ public class SLMathsTest {
         dataset.forEach(data -> System.out.println(Arrays.toString(data.getData())));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void primitiveOverloads() {
+        List<Double> angles = Arrays.asList(0.5, 0.2, 0.9, 0.4, 0.45, 0.1);
+        double[] padded = new double[]{9, 0.5, 0.2, 0.9, 0.4, 0.45, 0.1, 9};
+        float[] paddedFloat = new float[]{9, 0.5F, 0.2F, 0.9F, 0.4F, 0.45F, 0.1F, 9};
+
+        assertEquals(SLMaths.mean(angles), SLMaths.mean(padded, 1, 6), 1e-12);
+        assertEquals(SLMaths.stddev(angles), SLMaths.stddev(padded, 1, 6), 1e-12);
+
+        double[] delta = new double[5];
+        SLMaths.calculateDelta(padded, 1, 6, delta, 0);
+        assertArrayEquals(SLMaths.toArray(SLMaths.calculateDelta(angles)), delta, 1e-12);
+
+        double[] expected = new double[]{SLMaths.stddev(angles), SLMaths.mean(angles),
+                SLMaths.stddev(SLMaths.calculateDelta(angles)), SLMaths.mean(SLMaths.calculateDelta(angles))};
+        assertArrayEquals(expected, SLMaths.extractFeatures(paddedFloat, 1, 6), 1e-6);
+
+        assertEquals(5, SLMaths.euclideanDistance(new double[]{0, 3, 4}, 1, new double[]{0, 0, 0}, 0, 2), 0);
+    }
+
+}